@@ -0,0 +1,48 @@
+package org.peon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.peon.PeonTask;
+
+/**
+ * Measures the cost of getBlockingTaskFor() as the number of currently running tasks grows. The cost should
+ * not depend on the number of running tasks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingTaskForBenchmark {
+
+    @Param({"0", "10", "100", "1000", "10000"})
+    private int runningTasks;
+
+    private InlinePeonMaster peonMaster;
+
+    @Setup
+    public void setUp() {
+        peonMaster = new InlinePeonMaster(true);
+        for(int i = 0; i < runningTasks; i++) {
+            peonMaster.execute(new NoopTask());
+        }
+    }
+
+    @Benchmark
+    public PeonTask getBlockingTaskFor() {
+        return peonMaster.getBlockingTaskFor(ClassBlockingNoopTask.class);
+    }
+
+}
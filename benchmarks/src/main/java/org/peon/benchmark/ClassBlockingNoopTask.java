@@ -0,0 +1,10 @@
+package org.peon.benchmark;
+
+import org.peon.annotation.ClassBlocking;
+
+/**
+ * A class blocking task that does nothing, used as the class that getBlockingTaskFor() is asked about.
+ */
+@ClassBlocking
+public class ClassBlockingNoopTask extends NoopTask {
+}
@@ -0,0 +1,47 @@
+package org.peon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.peon.executor.ExecutorPeonMaster;
+
+/**
+ * Measures the end-to-end latency from executing a task until its DONE event has been delivered on the callback
+ * thread, through a real worker thread and callback thread.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventDeliveryBenchmark {
+
+    private ExecutorPeonMaster peonMaster;
+
+    @Setup
+    public void setUp() {
+        peonMaster = new ExecutorPeonMaster(2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        peonMaster.shutdown();
+    }
+
+    @Benchmark
+    public Void executeUntilDone() throws Exception {
+        return peonMaster.submit(new NoopTask()).get();
+    }
+
+}
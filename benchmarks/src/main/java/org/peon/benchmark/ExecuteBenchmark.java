@@ -0,0 +1,66 @@
+package org.peon.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.peon.PeonTask;
+
+/**
+ * Measures the overhead of the peon master for executing a task: admission, events, peon creation and removal,
+ * with peons that execute the tasks inline so that no thread hand-offs are included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExecuteBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private InlinePeonMaster peonMaster;
+
+    @Setup
+    public void setUp() {
+        peonMaster = new InlinePeonMaster(false);
+    }
+
+    @Benchmark
+    public PeonTask execute() {
+        NoopTask noopTask = new NoopTask();
+        peonMaster.execute(noopTask);
+        return noopTask;
+    }
+
+    @Benchmark
+    public PeonTask executeBlocking() {
+        ClassBlockingNoopTask classBlockingNoopTask = new ClassBlockingNoopTask();
+        peonMaster.execute(classBlockingNoopTask);
+        return classBlockingNoopTask;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<PeonTask> executeAll() {
+        List<PeonTask> noopTasks = new ArrayList<PeonTask>(BATCH_SIZE);
+        for(int i = 0; i < BATCH_SIZE; i++) {
+            noopTasks.add(new NoopTask());
+        }
+        peonMaster.executeAll(noopTasks);
+        return noopTasks;
+    }
+
+}
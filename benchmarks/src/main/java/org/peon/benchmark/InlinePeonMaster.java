@@ -0,0 +1,60 @@
+package org.peon.benchmark;
+
+import java.beans.PropertyChangeListener;
+
+import org.peon.AbstractPeonMaster;
+import org.peon.Peon;
+import org.peon.PeonTask;
+
+/**
+ * A peon master whose peons execute their tasks on the thread that executes them and are done at once, so that
+ * benchmarks measure the bookkeeping of the master without any thread hand-offs. Peons of an idle master never
+ * work, so their tasks stay among the currently running tasks.
+ */
+public class InlinePeonMaster extends AbstractPeonMaster {
+
+    /**
+     * True if the peons never work.
+     */
+    private final boolean idle;
+
+    /**
+     * Creates a peon master.
+     *
+     * @param idle True if the peons should never work, false if they should execute their tasks at once.
+     */
+    public InlinePeonMaster(boolean idle) {
+        this.idle = idle;
+    }
+
+    @Override
+    protected Peon createPeon(final PeonTask peonTask) {
+        return new Peon() {
+            @Override
+            public void work() {
+                if(!idle) {
+                    peonTask.execute();
+                    peonTaskDone(peonTask);
+                }
+            }
+
+            @Override
+            public PeonTask getPeonTask() {
+                return peonTask;
+            }
+
+            @Override
+            public void setPeonTask(PeonTask peonTask) {
+            }
+
+            @Override
+            public void addPropertyChangeListener(PropertyChangeListener propertyChangeListener) {
+            }
+
+            @Override
+            public void removePropertyChangeListener(PropertyChangeListener propertyChangeListener) {
+            }
+        };
+    }
+
+}
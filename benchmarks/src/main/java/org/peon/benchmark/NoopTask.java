@@ -0,0 +1,43 @@
+package org.peon.benchmark;
+
+import org.peon.AbstractPeonTask;
+import org.peon.annotation.Category;
+
+/**
+ * A task that does nothing, so that benchmarks measure the peon and not the task.
+ */
+@Category("Benchmark")
+public class NoopTask extends AbstractPeonTask<Void> {
+
+    public NoopTask() {
+        setName("Noop Task");
+    }
+
+    /**
+     * Makes the task active without executing it and gives it an unbounded total, so that progress() has an effect.
+     */
+    public void start() {
+        setTotal(Long.MAX_VALUE);
+        activate();
+    }
+
+    /**
+     * Progresses the task by one operation.
+     */
+    public void step() {
+        progress();
+    }
+
+    /**
+     * Progresses the task by a number of operations.
+     *
+     * @param operations The number of operations.
+     */
+    public void step(long operations) {
+        progress(operations);
+    }
+
+    @Override
+    protected void doExecute() {
+    }
+}
@@ -0,0 +1,90 @@
+package org.peon.benchmark;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of AbstractPeonTask.progress() with and without a property change listener, from one
+ * thread and from several threads progressing the same task.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Unobserved {
+
+        private NoopTask noopTask;
+
+        @Setup
+        public void setUp() {
+            noopTask = new NoopTask();
+            noopTask.start();
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class Observed {
+
+        private NoopTask noopTask;
+
+        @Setup
+        public void setUp(final Blackhole blackhole) {
+            noopTask = new NoopTask();
+            noopTask.addPropertyChangeListener(new PropertyChangeListener() {
+                @Override
+                public void propertyChange(PropertyChangeEvent e) {
+                    blackhole.consume(e);
+                }
+            });
+            noopTask.start();
+        }
+
+    }
+
+    @Benchmark
+    public void progressWithoutListener(Unobserved unobserved) {
+        unobserved.noopTask.step();
+    }
+
+    @Benchmark
+    public void progressWithListener(Observed observed) {
+        observed.noopTask.step();
+    }
+
+    @Benchmark
+    public void progressBulkWithListener(Observed observed) {
+        observed.noopTask.step(100);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void progressWithoutListenerContended(Unobserved unobserved) {
+        unobserved.noopTask.step();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void progressWithListenerContended(Observed observed) {
+        observed.noopTask.step();
+    }
+
+}
@@ -2,58 +2,864 @@ package org.peon;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import org.peon.annotation.ApplicationBlocking;
-import org.peon.annotation.Category;
-import org.peon.annotation.CategoryBlocking;
-import org.peon.annotation.ClassBlocking;
 import org.peon.annotation.StartsTasks;
+import org.peon.cache.PeonResultCache;
+import org.peon.event.PeonTaskBatchListener;
 import org.peon.event.PeonTaskEvent;
 import org.peon.event.PeonTaskListener;
 import org.peon.event.PeonTaskEvent.EventId;
+import org.peon.metrics.PeonMetricsSink;
 
 /**
  * The PeonMaster keeps track of the active peons and tasks and relay events from the
  * running tasks to listeners on the GUI event thread. All tasks should be run by calling
  * the execute() method in a PeonMaster.
  *
- * This class is not threadsafe and its methods should only be called from the GUI event thread.
+ * This class is threadsafe and its methods may be called from any thread. Events relayed from the running tasks
+ * are dispatched on the GUI event thread, but the WAITING, STARTING and QUEUED events are dispatched on the thread
+ * that calls execute(). Admission of tasks is serialized per category using striped locks, so tasks in different
+ * categories can be executed from many threads at the same time without contending for a single lock. Only the
+ * admission of @ApplicationBlocking tasks, and starting tasks from the wait queue, lock out all other admissions.
  *
  * It is recommended to use a singleton peon master in the application as each peon master
  * can only check for blocking tasks against the tasks it runs itself.
  *
  * This class provides an implementation of the PeonMaster interface that should work for most situations.
+ *
+ * By default a task that is blocked by a currently running task is rejected with a PeonTaskConcurrencyException.
+ * When queueing of blocked tasks is enabled the task is put in a wait queue instead and started automatically,
+ * in the order it was executed, as soon as the tasks blocking it are done. A waiting task that is cancelled leaves
+ * the wait queue at once and its CANCELLED and DONE events are dispatched on the thread that cancelled it.
+ *
+ * By default every task is handed to its peon as soon as it is started. When a maximum number of working peons
+ * is set, peons beyond the maximum are kept in a run queue and dispatched by task priority as other peons are done.
+ * Peons gain one priority level for every aging interval they spend in the run queue, so low priority tasks still
+ * get to run under a steady load of high priority tasks.
+ *
+ * Tasks with a @Timeout annotation, or executed with a timeout, are timed out by a shared timer if they are not done
+ * within their timeout after being started, which frees their worker thread and their blocking slot.
+ *
+ * Setting a metrics sink, for example PeonMetrics, makes the master report when each task is executed, started and
+ * done, from which the sink can derive throughput, queue and run times and outcomes per task class and category.
  */
 public abstract class AbstractPeonMaster implements PeonMaster, PropertyChangeListener {
 
     /**
-     * The currently active tasks for this PeonMaster.
+     * The number of category locks. Categories whose names hash to the same stripe share a lock.
      */
-    private final Set<PeonTask> currentTasks = new HashSet<PeonTask>();
+    private static final int CATEGORY_LOCK_STRIPES = 32;
+
+    /**
+     * The currently active tasks for this PeonMaster, indexed for fast blocking checks.
+     */
+    private final BlockingIndex blockingIndex = new BlockingIndex();
+    /**
+     * Admissions of @ApplicationBlocking tasks and starts of waiting tasks hold the write lock, all other
+     * changes to the active and waiting tasks hold the read lock and the lock of their category.
+     */
+    private final ReentrantReadWriteLock applicationLock = new ReentrantReadWriteLock();
+    /**
+     * Striped locks that serialize changes to the active and waiting tasks of the same category.
+     */
+    private final Lock[] categoryLocks = new Lock[CATEGORY_LOCK_STRIPES];
     /**
      * Task listeners for this PeonMaster.
      */
-    private final Set<PeonTaskListener> peonTaskListeners = new HashSet<PeonTaskListener>();
+    private final Set<PeonTaskListener> peonTaskListeners = new CopyOnWriteArraySet<PeonTaskListener>();
+    /**
+     * True if blocked tasks are put in the wait queue instead of being rejected.
+     */
+    private volatile boolean queueBlockedTasks = false;
+    /**
+     * Tasks waiting for the tasks that block them to be done, in the order they were executed.
+     */
+    private final Queue<WaitingTask> waitingTasks = new ConcurrentLinkedQueue<WaitingTask>();
+    /**
+     * The waiting tasks, indexed for fast blocking checks. A waiting task blocks tasks executed after it
+     * just as if it was running, so that it can not be starved by a steady stream of later tasks.
+     */
+    private final BlockingIndex waitingIndex = new BlockingIndex(true);
+    /**
+     * Listens to the waiting tasks, so that a waiting task that is cancelled leaves the wait queue and stops blocking
+     * the tasks behind it at once, instead of when the next running task is done.
+     */
+    private final PropertyChangeListener waitingTaskListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent e) {
+            if(e.getPropertyName().equals("state") && e.getNewValue() == PeonTaskState.CANCELLED) {
+                startWaitingTasks();
+            }
+        }
+    };
+    /**
+     * The number of tasks that have left the wait queue and been started.
+     */
+    private final AtomicLong waitedTaskCount = new AtomicLong();
+    /**
+     * The total time in nanoseconds tasks that have left the wait queue spent in it.
+     */
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    /**
+     * The maximum number of progress events per second the peons relay from each task or 0 for no limit.
+     */
+    private volatile int maxProgressEventRate = 0;
+    /**
+     * Peons of started tasks waiting to be dispatched to a worker thread, ordered by priority with aging.
+     */
+    private final RunQueue runQueue = new RunQueue();
+    /**
+     * Guards the run queue and the number of working peons.
+     */
+    private final Lock runQueueLock = new ReentrantLock();
+    /**
+     * The tasks whose peons have been dispatched from the run queue and are not yet done.
+     */
+    private final Set<PeonTask> dispatchedTasks = Collections.newSetFromMap(new ConcurrentHashMap<PeonTask, Boolean>());
+    /**
+     * The number of peons dispatched from the run queue that are not yet done.
+     */
+    private int workingPeons = 0;
+    /**
+     * The maximum number of peons dispatched from the run queue that may work at the same time or 0 for no limit.
+     */
+    private volatile int maxWorkingPeons = 0;
+    /**
+     * The time in nanoseconds a peon must spend in the run queue to gain one priority level.
+     */
+    private volatile long priorityAgingInterval = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * The futures of the submitted tasks that are not done yet.
+     */
+    private final Map<PeonTask, PeonTaskFuture<?>> futures = new ConcurrentHashMap<PeonTask, PeonTaskFuture<?>>();
+    /**
+     * The timeouts in nanoseconds of tasks executed with a timeout of their own that have not been started yet.
+     */
+    private final Map<PeonTask, Long> submissionTimeouts = new ConcurrentHashMap<PeonTask, Long>();
+    /**
+     * The timeouts in nanoseconds of tasks that have been handed to their peons but have not started running on a
+     * worker thread yet.
+     */
+    private final Map<PeonTask, Long> startTimeouts = new ConcurrentHashMap<PeonTask, Long>();
+    /**
+     * The scheduled timeouts of the started tasks that have a timeout and are not done yet.
+     */
+    private final Map<PeonTask, ScheduledFuture<?>> timeouts = new ConcurrentHashMap<PeonTask, ScheduledFuture<?>>();
+    /**
+     * Receives measurements of the executed tasks or null if tasks are not measured.
+     */
+    private volatile PeonMetricsSink metricsSink;
+    /**
+     * The measured tasks that have been reported as submitted to the metrics sink and are not done yet.
+     */
+    private final Set<PeonTask> measuredTasks = Collections.newSetFromMap(new ConcurrentHashMap<PeonTask, Boolean>());
+    /**
+     * The graph each task that was executed as part of a graph belongs to, until the task is done or skipped.
+     */
+    private final Map<PeonTask, PeonTaskGraph> graphs = new ConcurrentHashMap<PeonTask, PeonTaskGraph>();
+    /**
+     * The deduplicated tasks in flight by their flight key. Guards itself and the duplicates.
+     */
+    private final Map<List<Object>, PeonTask> flights = new HashMap<List<Object>, PeonTask>();
+    /**
+     * The duplicates attached to each deduplicated task in flight.
+     */
+    private final Map<PeonTask, List<PeonTask>> duplicates = new ConcurrentHashMap<PeonTask, List<PeonTask>>();
+    /**
+     * The flight key each deduplicated task in flight took its flight with, so that the flight is ended under the same
+     * key even if the deduplication key of the task changes while it runs. Guarded by the flights.
+     */
+    private final Map<PeonTask, List<Object>> flightKeys = new HashMap<PeonTask, List<Object>>();
+    /**
+     * The cache that holds the results of finished cacheable tasks or null if results are not cached.
+     */
+    private volatile PeonResultCache resultCache;
+
+    public AbstractPeonMaster() {
+        for(int i = 0; i < categoryLocks.length; i++) {
+            categoryLocks[i] = new ReentrantLock();
+        }
+    }
 
     /**
      * Executes a task in a background worker thread.
      *
+     * If the task is blocked by a currently running task and queueing of blocked tasks is enabled, the task is put
+     * in the wait queue and a WAITING event is fired. The task will be started as soon as the tasks that block it are done.
+     *
+     * If the task is a CacheablePeonTask whose result is in the result cache, the task is finished with the cached
+     * result at once and fires CACHED, FINISHED and DONE events on the calling thread. If the task is a
+     * DeduplicatedPeonTask and an equal task is already waiting or running, the task is not run but attached to the
+     * task in flight, whose outcome it takes over when that task is done.
+     *
      * @param peonTask The task that will be executed.
-     * @throws PeonTaskConcurrencyException if the task is blocked from running by another currenly running task.
+     * @throws PeonTaskConcurrencyException if the task is blocked from running by another currenly running task
+     *                                      and queueing of blocked tasks is disabled.
+     * @throws java.util.concurrent.RejectedExecutionException if the peon could not hand the task to a worker thread.
      */
     @Override
     public void execute(PeonTask peonTask) {
-        PeonTask blockingTask = getBlockingTaskFor(peonTask.getClass());
-        if(blockingTask != null) {
-            throw new PeonTaskConcurrencyException(blockingTask, peonTask);
+        if(resultCache != null && serveFromCache(peonTask)) {
+            return;
+        }
+        List<Object> flightKey = flightKey(peonTask);
+        if(flightKey != null && !takeFlight(flightKey, peonTask)) {
+            return;
+        }
+        try {
+            admit(peonTask, queueBlockedTasks);
+        } catch(RuntimeException e) {
+            if(flightKey != null) {
+                land(peonTask, true);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the key of the result of a cacheable task in the result cache, made of the class and the cache key of the task.
+     *
+     * @param peonTask The task.
+     * @return The key of the result of the task or null if the result of the task is not cached.
+     */
+    private static List<Object> cacheKey(PeonTask peonTask) {
+        if(!(peonTask instanceof CacheablePeonTask) || !(peonTask instanceof AbstractPeonTask)) {
+            return null;
+        }
+        Object cacheKey = ((CacheablePeonTask<?>)peonTask).getCacheKey();
+        return (cacheKey != null ? Arrays.<Object>asList(peonTask.getClass(), cacheKey) : null);
+    }
+
+    /**
+     * Finishes a cacheable task with its cached result, if there is one.
+     *
+     * @param peonTask The task that is executed.
+     * @return True if the task was finished with a cached result, false if it should be executed.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean serveFromCache(PeonTask peonTask) {
+        PeonResultCache resultCache = this.resultCache;
+        List<Object> cacheKey = cacheKey(peonTask);
+        if(resultCache == null || cacheKey == null) {
+            return false;
+        }
+        Object result = resultCache.get(cacheKey);
+        if(result == null || !((AbstractPeonTask)peonTask).complete(result)) {
+            return false;
+        }
+        peonTask.getTimings().submitted();
+        firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.CACHED));
+        firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.FINISHED));
+        fireDone(peonTask);
+        return true;
+    }
+
+    /**
+     * Caches the result of a cacheable task that has finished.
+     *
+     * @param peonTask The task that is done.
+     */
+    private void cacheResult(PeonTask peonTask) {
+        PeonResultCache resultCache = this.resultCache;
+        List<Object> cacheKey = cacheKey(peonTask);
+        if(resultCache != null && cacheKey != null && peonTask.getState() == PeonTaskState.FINISHED && peonTask.getResult() != null) {
+            resultCache.put(cacheKey, peonTask.getResult());
+        }
+    }
+
+    /**
+     * Gets the key that identifies the work of a deduplicated task, made of the class and the deduplication key of
+     * the task.
+     *
+     * @param peonTask The task.
+     * @return The flight key of the task or null if the task is not deduplicated.
+     */
+    private static List<Object> flightKey(PeonTask peonTask) {
+        if(!(peonTask instanceof DeduplicatedPeonTask) || !(peonTask instanceof AbstractPeonTask)) {
+            return null;
+        }
+        Object deduplicationKey = ((DeduplicatedPeonTask<?>)peonTask).getDeduplicationKey();
+        return (deduplicationKey != null ? Arrays.<Object>asList(peonTask.getClass(), deduplicationKey) : null);
+    }
+
+    /**
+     * Makes a deduplicated task the task in flight for its key, or attaches it to the task that already is.
+     *
+     * @param flightKey The flight key of the task.
+     * @param peonTask The task.
+     * @return True if the task is now in flight and should be executed, false if it was attached as a duplicate.
+     */
+    private boolean takeFlight(List<Object> flightKey, PeonTask peonTask) {
+        synchronized(flights) {
+            PeonTask primary = flights.get(flightKey);
+            if(primary != null) {
+                duplicates.get(primary).add(peonTask);
+                return false;
+            }
+            flights.put(flightKey, peonTask);
+            flightKeys.put(peonTask, flightKey);
+            duplicates.put(peonTask, new CopyOnWriteArrayList<PeonTask>());
+            return true;
         }
-        addPeonTask(peonTask);
-        firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.STARTING));
-        Peon peon = createPeon(peonTask);
-        peon.addPropertyChangeListener(this);
-        peon.work();
+    }
+
+    /**
+     * Ends the flight of a deduplicated task that is done or was rejected. The duplicates of a task that is done take
+     * over its outcome and the duplicates of a rejected task are cancelled. Either way they fire their outcome and
+     * DONE events.
+     *
+     * @param primary The task in flight.
+     * @param rejected True if the task in flight was rejected and will never be executed.
+     */
+    private void land(PeonTask primary, boolean rejected) {
+        List<PeonTask> attached = endFlight(primary);
+        if(attached != null) {
+            land(primary, attached, rejected);
+        }
+    }
+
+    /**
+     * Ends the flight of a deduplicated task, so that a task with the same flight key that is executed from now on
+     * takes a new flight.
+     *
+     * @param primary The task in flight.
+     * @return The duplicates that were attached to the task or null if the task was not in flight.
+     */
+    private List<PeonTask> endFlight(PeonTask primary) {
+        synchronized(flights) {
+            List<PeonTask> attached = duplicates.remove(primary);
+            if(attached != null) {
+                flights.remove(flightKeys.remove(primary));
+            }
+            return attached;
+        }
+    }
+
+    /**
+     * Lets the duplicates of a task whose flight has ended take over its outcome, or cancels them if it was rejected,
+     * and fires their outcome and DONE events.
+     *
+     * @param primary The task that was in flight.
+     * @param attached The duplicates that were attached to the task.
+     * @param rejected True if the task in flight was rejected and will never be executed.
+     */
+    @SuppressWarnings("unchecked")
+    private void land(PeonTask primary, List<PeonTask> attached, boolean rejected) {
+        for(PeonTask duplicate : attached) {
+            if(rejected) {
+                duplicate.cancel();
+            } else {
+                // Duplicates are only attached to tasks of the same class, so the result types match.
+                ((AbstractPeonTask)duplicate).adopt(primary);
+            }
+            EventId outcome = outcome(duplicate.getState());
+            if(outcome != null) {
+                firePeonTaskEvent(new PeonTaskEvent(duplicate, outcome));
+            }
+            fireDone(duplicate);
+        }
+    }
+
+    /**
+     * Relays an event of a deduplicated task in flight to its duplicates. The DONE event is not relayed here, the
+     * flight is ended before it is dispatched instead.
+     *
+     * @param e The event that was dispatched for the task in flight.
+     */
+    private void relayToDuplicates(PeonTaskEvent e) {
+        EventId id = e.getId();
+        if(id == EventId.STARTED || id == EventId.PROGRESSED || id == EventId.STATUS) {
+            List<PeonTask> attached = duplicates.get(e.getSource());
+            if(attached != null) {
+                for(PeonTask duplicate : attached) {
+                    ((AbstractPeonTask<?>)duplicate).mirror(e.getSource());
+                    firePeonTaskEvent(new PeonTaskEvent(duplicate, id));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the event that tells that a task ended in a state.
+     *
+     * @param peonTaskState The state of the task.
+     * @return The event id of the state or null if the state is not an end state.
+     */
+    private static EventId outcome(PeonTaskState peonTaskState) {
+        if(peonTaskState == PeonTaskState.CANCELLED) {
+            return EventId.CANCELLED;
+        } else if(peonTaskState == PeonTaskState.FAILED) {
+            return EventId.FAILED;
+        } else if(peonTaskState == PeonTaskState.EXCEPTION) {
+            return EventId.EXCEPTION;
+        } else if(peonTaskState == PeonTaskState.FINISHED) {
+            return EventId.FINISHED;
+        } else if(peonTaskState == PeonTaskState.TIMED_OUT) {
+            return EventId.TIMED_OUT;
+        }
+        return null;
+    }
+
+    /**
+     * Executes a task in a background worker thread and times it out if it is not done within the given time after
+     * it is started. The timeout replaces the @Timeout annotation of the task class, if any. The timeout starts when
+     * the task starts running on a worker thread and its STARTED event is fired, so time spent in the wait queue, the
+     * run queue and the queue of the executor does not count.
+     *
+     * A task that times out changes state to PeonTaskState.TIMED_OUT, its worker thread is interrupted, its peon is
+     * cancelled and a TIMED_OUT event is fired. The task is then done and no longer blocks other tasks, even if its
+     * code ignores the interruption and keeps the worker thread busy.
+     *
+     * @param peonTask The task that will be executed.
+     * @param timeout The longest time the task may take once it is started.
+     * @param unit The unit of the timeout.
+     * @throws PeonTaskConcurrencyException if the task is blocked from running by another currenly running task
+     *                                      and queueing of blocked tasks is disabled.
+     * @throws java.util.concurrent.RejectedExecutionException if the peon could not hand the task to a worker thread.
+     */
+    public void execute(PeonTask peonTask, long timeout, TimeUnit unit) {
+        submissionTimeouts.put(peonTask, unit.toNanos(timeout));
+        try {
+            execute(peonTask);
+        } catch(RuntimeException e) {
+            submissionTimeouts.remove(peonTask);
+            throw e;
+        }
+    }
+
+    /**
+     * Executes a task in a background worker thread and returns a future that is completed when the task is done.
+     * The future completes with the result of the task if it finished, with a PeonTaskFailedException if it failed,
+     * with the exception thrown by the task if it ended with an exception, with a TimeoutException if it timed out
+     * and is cancelled if the task was cancelled. The future is completed after the DONE event for the task has been
+     * dispatched, on the same thread. Cancelling the future cancels the task.
+     *
+     * @param peonTask The task that will be executed.
+     * @return A future that is completed when the task is done.
+     * @throws PeonTaskConcurrencyException if the task is blocked from running by another currenly running task
+     *                                      and queueing of blocked tasks is disabled.
+     * @throws java.util.concurrent.RejectedExecutionException if the peon could not hand the task to a worker thread.
+     */
+    @Override
+    public <T> CompletableFuture<T> submit(PeonTask<T> peonTask) {
+        PeonTaskFuture<T> future = new PeonTaskFuture<T>(peonTask);
+        futures.put(peonTask, future);
+        try {
+            execute(peonTask);
+        } catch(RuntimeException e) {
+            futures.remove(peonTask);
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Executes a collection of tasks in background worker threads. The tasks are admitted in a single pass, their
+     * peons are created and handed to the worker threads in bulk and their WAITING, STARTING and QUEUED events are
+     * fired as batches. This is much cheaper than calling execute() for each task when there are many small tasks.
+     * The admission locks are only held while each task is checked against the blocking tasks, so other tasks can
+     * be executed while the batch is admitted.
+     *
+     * Cacheable and deduplicated tasks are handled as by execute(): a task whose result is cached is finished at
+     * once and a task whose work is already in flight is attached to the task in flight. The remaining tasks are
+     * checked for blocking against the currently running tasks and against the tasks before them in the collection.
+     * If queueing of blocked tasks is disabled and any of them is blocked, none of them are executed.
+     *
+     * @param peonTasks The tasks that will be executed, in order.
+     * @throws PeonTaskConcurrencyException if a task is blocked from running by another currently running task, or
+     *                                      by a task before it in the collection, and queueing of blocked tasks is disabled.
+     * @throws java.util.concurrent.RejectedExecutionException if a peon could not hand its task to a worker thread.
+     */
+    @Override
+    public void executeAll(Collection<? extends PeonTask> peonTasks) {
+        List<PeonTask> candidates = new ArrayList<PeonTask>(peonTasks.size());
+        List<PeonTask> flyingTasks = new ArrayList<PeonTask>();
+        for(PeonTask peonTask : peonTasks) {
+            if(resultCache != null && serveFromCache(peonTask)) {
+                continue;
+            }
+            List<Object> flightKey = flightKey(peonTask);
+            if(flightKey != null) {
+                if(!takeFlight(flightKey, peonTask)) {
+                    continue;
+                }
+                flyingTasks.add(peonTask);
+            }
+            candidates.add(peonTask);
+        }
+        List<PeonTask> admitted = new ArrayList<PeonTask>(candidates.size());
+        List<PeonTask> waiting = new ArrayList<PeonTask>();
+        boolean queueBlockedTasks = this.queueBlockedTasks;
+        for(PeonTask peonTask : candidates) {
+            PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+            PeonTask blockingTask;
+            lock(descriptor);
+            try {
+                blockingTask = blockingIndex.getBlockingTaskFor(descriptor);
+                if(blockingTask == null && queueBlockedTasks) {
+                    blockingTask = waitingIndex.getBlockingTaskFor(descriptor);
+                }
+                if(blockingTask == null) {
+                    blockingIndex.add(peonTask);
+                    admitted.add(peonTask);
+                } else if(queueBlockedTasks) {
+                    // A batch that queues blocked tasks is never rejected, so the task is admitted for good.
+                    peonTask.getTimings().submitted();
+                    enqueue(peonTask);
+                    waiting.add(peonTask);
+                }
+            } finally {
+                unlock(descriptor);
+            }
+            if(blockingTask != null && !queueBlockedTasks) {
+                reject(admitted, flyingTasks);
+                throw new PeonTaskConcurrencyException(blockingTask, peonTask);
+            }
+        }
+        for(PeonTask peonTask : admitted) {
+            peonTask.getTimings().submitted();
+        }
+        firePeonTaskEvents(events(waiting, EventId.WAITING));
+        removeCancelledWaitingTasks(waiting);
+        try {
+            start(admitted);
+        } catch(RuntimeException e) {
+            for(PeonTask peonTask : flyingTasks) {
+                if(peonTask.getState() == PeonTaskState.PENDING && !blockingIndex.getTasks().contains(peonTask)) {
+                    // The peon of the task could not hand it to a worker thread.
+                    land(peonTask, true);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Takes back the admission of a batch of tasks that was rejected. The admitted tasks are removed from the
+     * currently active tasks and the flights of the deduplicated tasks in the batch are ended.
+     *
+     * @param admitted The tasks in the batch that were added to the currently active tasks.
+     * @param flyingTasks The deduplicated tasks in the batch that took a flight.
+     */
+    private void reject(List<PeonTask> admitted, List<PeonTask> flyingTasks) {
+        for(PeonTask peonTask : admitted) {
+            PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+            lock(descriptor);
+            try {
+                blockingIndex.remove(peonTask);
+            } finally {
+                unlock(descriptor);
+            }
+        }
+        for(PeonTask peonTask : flyingTasks) {
+            land(peonTask, true);
+        }
+        // Tasks executed meanwhile may have been put in the wait queue behind the tasks of the batch.
+        startWaitingTasks();
+    }
+
+    /**
+     * Executes a graph of tasks. The tasks without prerequisites are executed at once and every other task is
+     * executed as soon as all of its prerequisites have finished, so that independent branches of the graph run
+     * in parallel. Tasks in the graph that are blocked by a currently running task are always put in the wait
+     * queue, whether queueing of blocked tasks is enabled or not. Tasks that depend on a task that did not finish
+     * are cancelled without being executed and fire CANCELLED and DONE events.
+     *
+     * @param peonTaskGraph The graph of tasks that will be executed.
+     * @throws IllegalStateException if the graph has already been executed.
+     */
+    public void execute(PeonTaskGraph peonTaskGraph) {
+        List<PeonTask> ready = peonTaskGraph.start();
+        for(PeonTask peonTask : peonTaskGraph.getTasks()) {
+            graphs.put(peonTask, peonTaskGraph);
+        }
+        executeInGraph(peonTaskGraph, ready);
+    }
+
+    /**
+     * Executes the tasks in a graph whose prerequisites have all finished, handing the prerequisites to dependent tasks
+     * first. Tasks that can not be handed to a worker thread are skipped along with the tasks that depend on them.
+     *
+     * @param peonTaskGraph The graph the tasks are in.
+     * @param ready The tasks that will be executed.
+     */
+    private void executeInGraph(PeonTaskGraph peonTaskGraph, List<PeonTask> ready) {
+        for(PeonTask peonTask : ready) {
+            try {
+                if(peonTask instanceof DependentPeonTask) {
+                    for(PeonTask prerequisite : peonTaskGraph.getPrerequisites(peonTask)) {
+                        ((DependentPeonTask<?>)peonTask).prerequisiteFinished(prerequisite);
+                    }
+                }
+                admit(peonTask, true);
+            } catch(RuntimeException e) {
+                List<PeonTask> skipped = new ArrayList<PeonTask>();
+                peonTaskGraph.taskRejected(peonTask, skipped);
+                skipped.add(0, peonTask);
+                skip(skipped);
+            }
+        }
+    }
+
+    /**
+     * Cancels tasks in a graph that will never be executed and fires CANCELLED and DONE events for them.
+     *
+     * @param skipped The tasks that will never be executed.
+     */
+    private void skip(List<PeonTask> skipped) {
+        for(PeonTask peonTask : skipped) {
+            graphs.remove(peonTask);
+            peonTask.cancel();
+            firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.CANCELLED));
+            fireDone(peonTask);
+        }
+    }
+
+    /**
+     * Adds a task to the currently active tasks and starts it, or puts it in the wait queue if it is blocked.
+     *
+     * @param peonTask The task that will be executed.
+     * @param queueIfBlocked True to put the task in the wait queue if it is blocked, false to reject it.
+     * @throws PeonTaskConcurrencyException if the task is blocked and queueIfBlocked is false.
+     */
+    private void admit(PeonTask peonTask, boolean queueIfBlocked) {
+        PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+        boolean waiting = false;
+        lock(descriptor);
+        try {
+            PeonTask blockingTask = blockingIndex.getBlockingTaskFor(descriptor);
+            if(blockingTask == null && queueIfBlocked) {
+                blockingTask = waitingIndex.getBlockingTaskFor(descriptor);
+            }
+            if(blockingTask != null && !queueIfBlocked) {
+                throw new PeonTaskConcurrencyException(blockingTask, peonTask);
+            }
+            // A rejected task is not stamped, so that it can be executed again later with the right timings.
+            peonTask.getTimings().submitted();
+            if(blockingTask == null) {
+                blockingIndex.add(peonTask);
+            } else {
+                enqueue(peonTask);
+                waiting = true;
+            }
+        } finally {
+            unlock(descriptor);
+        }
+        if(waiting) {
+            firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.WAITING));
+            removeCancelledWaitingTasks(Collections.singletonList(peonTask));
+        } else {
+            start(peonTask);
+        }
+    }
+
+    /**
+     * Puts a blocked task in the wait queue and listens to it, so that it leaves the wait queue as soon as it is
+     * cancelled. The admission lock of the task must be held.
+     *
+     * @param peonTask The task that will wait.
+     */
+    private void enqueue(PeonTask peonTask) {
+        peonTask.addPropertyChangeListener(waitingTaskListener);
+        waitingTasks.add(new WaitingTask(peonTask));
+        waitingIndex.add(peonTask);
+    }
+
+    /**
+     * Removes tasks that were cancelled before they were put in the wait queue, and so before the peon master
+     * listened to them, from the wait queue.
+     *
+     * @param waiting The tasks that were put in the wait queue.
+     */
+    private void removeCancelledWaitingTasks(List<PeonTask> waiting) {
+        for(PeonTask peonTask : waiting) {
+            if(peonTask.getState() == PeonTaskState.CANCELLED) {
+                startWaitingTasks();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tells a new peon to start working on a task that has already been added to the currently active tasks.
+     *
+     * @param peonTask The task that will be started.
+     */
+    private void start(PeonTask peonTask) {
+        start(Collections.singletonList(peonTask));
+    }
+
+    /**
+     * Tells new peons to start working on tasks that have already been added to the currently active tasks. The
+     * STARTING and QUEUED events of the tasks are fired as batches and the peons are queued in bulk. If a peon fails to
+     * hand its task to a worker thread the task is removed from the currently active tasks, the remaining peons are
+     * still told to work and the first failure is rethrown at the end.
+     *
+     * @param peonTasks The tasks that will be started.
+     */
+    private void start(List<PeonTask> peonTasks) {
+        if(peonTasks.isEmpty()) {
+            return;
+        }
+        firePeonTaskEvents(events(peonTasks, EventId.STARTING));
+        for(PeonTask peonTask : peonTasks) {
+            Long submissionTimeout = submissionTimeouts.remove(peonTask);
+            long timeout = (submissionTimeout != null ? submissionTimeout : PeonTaskDescriptor.forTask(peonTask).getTimeout());
+            if(timeout > 0) {
+                startTimeouts.put(peonTask, timeout);
+            }
+        }
+        List<Peon> peons = new ArrayList<Peon>(peonTasks.size());
+        for(PeonTask peonTask : peonTasks) {
+            Peon peon = createPeon(peonTask);
+            peon.addPropertyChangeListener(this);
+            peons.add(peon);
+        }
+        firePeonTaskEvents(events(peonTasks, EventId.QUEUED));
+        List<Peon> queuedPeons = new ArrayList<Peon>(peons.size());
+        RuntimeException failure = null;
+        for(Peon peon : peons) {
+            if(maxWorkingPeons > 0 && !bypassesRunQueue(peon.getPeonTask())) {
+                queuedPeons.add(peon);
+                continue;
+            }
+            try {
+                peon.work();
+            } catch(RuntimeException e) {
+                startTimeouts.remove(peon.getPeonTask());
+                removePeonTask(peon.getPeonTask());
+                if(failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if(!queuedPeons.isEmpty()) {
+            runQueueLock.lock();
+            try {
+                long priorityAgingInterval = this.priorityAgingInterval;
+                for(Peon peon : queuedPeons) {
+                    runQueue.offer(peon, peon.getPeonTask().getPriority(), priorityAgingInterval);
+                }
+            } finally {
+                runQueueLock.unlock();
+            }
+            dispatchPeons();
+        }
+        if(failure != null) {
+            startWaitingTasks();
+            throw failure;
+        }
+    }
+
+    /**
+     * Checks if the peon of a task should be told to work at once instead of waiting in the run queue when the
+     * number of working peons is limited. Override this method in subclasses that run some tasks in a separate
+     * bounded executor, which then limits and queues those tasks by itself. The default implementation returns false.
+     *
+     * @param peonTask The task that is about to be started.
+     * @return True if the peon of the task bypasses the run queue and does not count towards the maximum number of working peons.
+     */
+    protected boolean bypassesRunQueue(PeonTask peonTask) {
+        return false;
+    }
+
+    /**
+     * Creates an event with the same id for each of the tasks.
+     *
+     * @param peonTasks The tasks that are the sources of the events.
+     * @param id The id of the events.
+     * @return A list of the events in the order of the tasks.
+     */
+    private static List<PeonTaskEvent> events(List<PeonTask> peonTasks, EventId id) {
+        List<PeonTaskEvent> events = new ArrayList<PeonTaskEvent>(peonTasks.size());
+        for(PeonTask peonTask : peonTasks) {
+            events.add(new PeonTaskEvent(peonTask, id));
+        }
+        return events;
+    }
+
+    /**
+     * Tells the peons in the run queue to work, highest priority first, until the maximum number of working peons
+     * is reached or the run queue is empty. Peons that fail to hand their task to a worker thread are done at once.
+     */
+    private void dispatchPeons() {
+        while(true) {
+            Peon peon;
+            runQueueLock.lock();
+            try {
+                if(runQueue.isEmpty() || (maxWorkingPeons > 0 && workingPeons >= maxWorkingPeons)) {
+                    return;
+                }
+                peon = runQueue.poll();
+                if(!blockingIndex.getTasks().contains(peon.getPeonTask())) {
+                    // The task was done before its peon got to work.
+                    continue;
+                }
+                workingPeons++;
+                dispatchedTasks.add(peon.getPeonTask());
+            } finally {
+                runQueueLock.unlock();
+            }
+            try {
+                peon.work();
+            } catch(RuntimeException e) {
+                peonTaskDone(peon.getPeonTask());
+            }
+        }
+    }
+
+    /**
+     * Acquires the locks that serialize changes to the active and waiting tasks with the given descriptor.
+     *
+     * @param descriptor The descriptor of the class of the task that will be changed.
+     */
+    private void lock(PeonTaskDescriptor descriptor) {
+        if(descriptor.isApplicationBlocking()) {
+            applicationLock.writeLock().lock();
+        } else {
+            applicationLock.readLock().lock();
+            categoryLock(descriptor).lock();
+        }
+    }
+
+    /**
+     * Releases the locks acquired by lock(PeonTaskDescriptor).
+     *
+     * @param descriptor The descriptor of the class of the task that was changed.
+     */
+    private void unlock(PeonTaskDescriptor descriptor) {
+        if(descriptor.isApplicationBlocking()) {
+            applicationLock.writeLock().unlock();
+        } else {
+            categoryLock(descriptor).unlock();
+            applicationLock.readLock().unlock();
+        }
+    }
+
+    private Lock categoryLock(PeonTaskDescriptor descriptor) {
+        return categoryLocks[(descriptor.getCategory().hashCode() & 0x7fffffff) % categoryLocks.length];
     }
 
     /**
@@ -73,40 +879,45 @@ public abstract class AbstractPeonMaster implements PeonMaster, PropertyChangeLi
     @Override
     public Set<PeonTask> getCurrentTasks() {
         Set<PeonTask> currentTasks = new HashSet<PeonTask>();
-        currentTasks.addAll(this.currentTasks);
+        currentTasks.addAll(this.blockingIndex.getTasks());
         return currentTasks;
     }
 
     /**
-     * Checks the class for @ApplicationBlocking, @CategoryBlocking or @ClassBlocking annotations and checks the set
-     * of currently running tasks to see if any of them will prevent a task of the given class from running, depending
-     * on which if any of those annotations are present on the class.
+     * Gets the number of currently running tasks in a category.
+     *
+     * @param category The value of the @Category annotation of the tasks or an empty string for tasks without one.
+     * @return The number of currently running tasks in the category.
+     */
+    public int getCurrentTaskCount(String category) {
+        return blockingIndex.getTaskCount(category);
+    }
+
+    /**
+     * Gets the number of currently running tasks of a class.
+     *
+     * @param clazz The class of the tasks.
+     * @return The number of currently running tasks of the class.
+     */
+    public int getCurrentTaskCount(Class<? extends PeonTask> clazz) {
+        return blockingIndex.getTaskCount(clazz);
+    }
+
+    /**
+     * Checks the class for @ApplicationBlocking, @CategoryBlocking, @ClassBlocking or @MaxConcurrent annotations and
+     * checks the set of currently running tasks to see if any of them will prevent a task of the given class from
+     * running, depending on which if any of those annotations are present on the class. A task class with a
+     * limit is blocked by one of the running tasks that fill it.
+     *
+     * The annotations of each class are only read once and the currently running tasks are indexed by category,
+     * class and blocking annotations, so this check takes constant time no matter how many tasks are running.
      *
      * @param clazz Will a task of this class be allowed to run or will it be blocked?
      * @return The currently running task that blocks a task of the given class from running or null if there is no such task.
      */
     @Override
     public PeonTask getBlockingTaskFor(Class<? extends PeonTask> clazz) {
-        for(PeonTask currentTask : this.currentTasks) {
-            Class<? extends PeonTask> currentClass = currentTask.getClass();
-            if(clazz.isAnnotationPresent(ApplicationBlocking.class)
-               || currentClass.isAnnotationPresent(ApplicationBlocking.class)) {
-                return currentTask;
-            } else if(clazz.isAnnotationPresent(CategoryBlocking.class)
-                      || currentClass.isAnnotationPresent(CategoryBlocking.class)) {
-                String category = (clazz.isAnnotationPresent(Category.class) ? clazz.getAnnotation(Category.class).value() : "");
-                String currentCategory = (currentClass.isAnnotationPresent(Category.class) ? currentClass.getAnnotation(Category.class).value() : "");
-                if(category.equals(currentCategory)) {
-                    return currentTask;
-                }
-            } else if(clazz.isAnnotationPresent(ClassBlocking.class)
-                      || currentClass.isAnnotationPresent(ClassBlocking.class)) {
-                if(clazz.equals(currentClass)) {
-                    return currentTask;
-                }
-            }
-        }
-        return null;
+        return blockingIndex.getBlockingTaskFor(PeonTaskDescriptor.forClass(clazz));
     }
 
     /**
@@ -144,21 +955,263 @@ public abstract class AbstractPeonMaster implements PeonMaster, PropertyChangeLi
         Peon peon = (Peon)e.getSource();
         PeonTask peonTask = peon.getPeonTask();
 
-        if(e.getPropertyName().equals("state")) {
-            if(e.getNewValue() == PeonTaskState.CANCELLED) {
-                firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.CANCELLED));
-            } else if(e.getNewValue() == PeonTaskState.FAILED) {
-                firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.FAILED));
-            } else if(e.getNewValue() == PeonTaskState.EXCEPTION) {
-                firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.EXCEPTION));
-            } else if(e.getNewValue() == PeonTaskState.FINISHED) {
-                firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.FINISHED));
+        if(e.getPropertyName().equals("state") && e.getNewValue() instanceof PeonTaskState) {
+            // Peons fire state changes of their own, which subclasses handle.
+            EventId outcome = outcome((PeonTaskState)e.getNewValue());
+            if(outcome != null) {
+                firePeonTaskEvent(new PeonTaskEvent(peonTask, outcome));
             }
         } else if(e.getPropertyName() == "progress") {
             firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.PROGRESSED));
         } else if(e.getPropertyName().equals("status")) {
           firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.STATUS));
+        } else if(e.getPropertyName().equals("published")) {
+            firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.PUBLISHED));
+        }
+    }
+
+    /**
+     * Removes a task that is done from the set of currently active tasks, fires a DONE event for it, executes
+     * or skips the tasks in its graph that depend on it and starts the waiting tasks that are no longer blocked.
+     * Subclasses should call this method when the peon of a task is done.
+     *
+     * @param peonTask The task that is done.
+     */
+    protected void peonTaskDone(PeonTask peonTask) {
+        removePeonTask(peonTask);
+        if(dispatchedTasks.remove(peonTask)) {
+            runQueueLock.lock();
+            try {
+                workingPeons--;
+            } finally {
+                runQueueLock.unlock();
+            }
+        }
+        PeonTaskGraph peonTaskGraph = graphs.remove(peonTask);
+        List<PeonTask> ready = new ArrayList<PeonTask>();
+        List<PeonTask> skipped = new ArrayList<PeonTask>();
+        if(peonTaskGraph != null) {
+            peonTaskGraph.taskDone(peonTask, ready, skipped);
+        }
+        if(resultCache != null) {
+            cacheResult(peonTask);
+        }
+        fireDone(peonTask);
+        if(peonTaskGraph != null) {
+            skip(skipped);
+            executeInGraph(peonTaskGraph, ready);
+        }
+        startWaitingTasks();
+        dispatchPeons();
+    }
+
+    /**
+     * Starts the waiting tasks that are no longer blocked by any currently running task or by any task that
+     * has been waiting longer than them, in the order they were executed. Waiting tasks that have been cancelled
+     * are removed from the wait queue and fire CANCELLED and DONE events, and the tasks in their graphs that depend
+     * on them are skipped. Called when a running task is done and when a waiting task is cancelled.
+     */
+    protected void startWaitingTasks() {
+        if(waitingTasks.isEmpty()) {
+            return;
+        }
+        List<WaitingTask> startable = new ArrayList<WaitingTask>();
+        List<PeonTask> cancelled = new ArrayList<PeonTask>();
+        applicationLock.writeLock().lock();
+        try {
+            BlockingIndex stillWaiting = new BlockingIndex(true);
+            for(Iterator<WaitingTask> iterator = waitingTasks.iterator(); iterator.hasNext();) {
+                WaitingTask waitingTask = iterator.next();
+                PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(waitingTask.peonTask);
+                if(waitingTask.peonTask.getState() == PeonTaskState.CANCELLED) {
+                    // The task was cancelled while it was waiting, so it will never be started.
+                    iterator.remove();
+                    waitingIndex.remove(waitingTask.peonTask);
+                    waitingTask.peonTask.removePropertyChangeListener(waitingTaskListener);
+                    cancelled.add(waitingTask.peonTask);
+                } else if(blockingIndex.getBlockingTaskFor(descriptor) == null
+                   && stillWaiting.getBlockingTaskFor(descriptor) == null) {
+                    iterator.remove();
+                    waitingIndex.remove(waitingTask.peonTask);
+                    waitingTask.peonTask.removePropertyChangeListener(waitingTaskListener);
+                    blockingIndex.add(waitingTask.peonTask);
+                    startable.add(waitingTask);
+                } else {
+                    // Tasks still waiting block the waiting tasks behind them.
+                    stillWaiting.add(waitingTask.peonTask);
+                }
+            }
+        } finally {
+            applicationLock.writeLock().unlock();
+        }
+        for(PeonTask peonTask : cancelled) {
+            PeonTaskGraph peonTaskGraph = graphs.remove(peonTask);
+            List<PeonTask> skipped = new ArrayList<PeonTask>();
+            if(peonTaskGraph != null) {
+                peonTaskGraph.taskDone(peonTask, new ArrayList<PeonTask>(), skipped);
+            }
+            firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.CANCELLED));
+            fireDone(peonTask);
+            skip(skipped);
+        }
+        List<PeonTask> startableTasks = new ArrayList<PeonTask>(startable.size());
+        long now = System.nanoTime();
+        for(WaitingTask waitingTask : startable) {
+            waitedTaskCount.incrementAndGet();
+            totalWaitTime.addAndGet(now - waitingTask.waitingSince);
+            startableTasks.add(waitingTask.peonTask);
+        }
+        start(startableTasks);
+    }
+
+    /**
+     * Gets the maximum number of progress events per second the peons relay from each task.
+     *
+     * @return The maximum number of progress events per second or 0 if there is no limit.
+     */
+    public int getMaxProgressEventRate() {
+        return maxProgressEventRate;
+    }
+
+    /**
+     * Sets the maximum number of progress events per second the peons relay from each task. Tasks that progress
+     * in tight loops can otherwise flood the GUI event thread with PROGRESSED events. The latest progress of a
+     * task is always relayed before the task changes state. The limit applies to tasks executed after it is set.
+     *
+     * @param maxProgressEventRate The maximum number of progress events per second or 0 for no limit.
+     */
+    public void setMaxProgressEventRate(int maxProgressEventRate) {
+        this.maxProgressEventRate = maxProgressEventRate;
+    }
+
+    /**
+     * Gets the maximum number of peons that may work at the same time.
+     *
+     * @return The maximum number of peons that may work at the same time or 0 if there is no limit.
+     */
+    public int getMaxWorkingPeons() {
+        return maxWorkingPeons;
+    }
+
+    /**
+     * Sets the maximum number of peons that may work at the same time. Peons of started tasks beyond the maximum
+     * wait in the run queue and are dispatched by task priority. Set this to the number of worker threads so that
+     * tasks wait in the priority ordered run queue rather than in the first come first served queue of the executor.
+     *
+     * @param maxWorkingPeons The maximum number of peons that may work at the same time or 0 for no limit.
+     */
+    public void setMaxWorkingPeons(int maxWorkingPeons) {
+        this.maxWorkingPeons = maxWorkingPeons;
+        dispatchPeons();
+    }
+
+    /**
+     * Gets the time in milliseconds a peon must spend in the run queue to gain one priority level.
+     *
+     * @return The time in milliseconds a peon must spend in the run queue to gain one priority level.
+     */
+    public long getPriorityAgingInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(priorityAgingInterval);
+    }
+
+    /**
+     * Sets the time in milliseconds a peon must spend in the run queue to gain one priority level. The default is
+     * one second, so a task with priority 0 that has waited for five seconds is dispatched before a task with
+     * priority 4 that was just started.
+     *
+     * @param priorityAgingInterval The time in milliseconds a peon must spend in the run queue to gain one priority level.
+     */
+    public void setPriorityAgingInterval(long priorityAgingInterval) {
+        this.priorityAgingInterval = TimeUnit.MILLISECONDS.toNanos(priorityAgingInterval);
+    }
+
+    /**
+     * Gets the number of peons in the run queue waiting to be dispatched to a worker thread.
+     *
+     * @return The number of peons in the run queue.
+     */
+    public int getRunQueueLength() {
+        runQueueLock.lock();
+        try {
+            return runQueue.size();
+        } finally {
+            runQueueLock.unlock();
+        }
+    }
+
+    /**
+     * Checks if blocked tasks are put in the wait queue instead of being rejected.
+     *
+     * @return True if blocked tasks are put in the wait queue, false if they are rejected.
+     */
+    public boolean isQueueBlockedTasks() {
+        return queueBlockedTasks;
+    }
+
+    /**
+     * Sets whether blocked tasks are put in the wait queue instead of being rejected with a PeonTaskConcurrencyException.
+     *
+     * @param queueBlockedTasks True to put blocked tasks in the wait queue, false to reject them.
+     */
+    public void setQueueBlockedTasks(boolean queueBlockedTasks) {
+        this.queueBlockedTasks = queueBlockedTasks;
+    }
+
+    /**
+     * Returns the tasks in the wait queue in the order they were executed.
+     *
+     * @return A list of the tasks in the wait queue.
+     */
+    @Override
+    public List<PeonTask> getWaitingTasks() {
+        List<PeonTask> waitingTasks = new ArrayList<PeonTask>();
+        for(WaitingTask waitingTask : this.waitingTasks) {
+            waitingTasks.add(waitingTask.peonTask);
+        }
+        return waitingTasks;
+    }
+
+    /**
+     * Gets the number of tasks in the wait queue.
+     *
+     * @return The number of tasks in the wait queue.
+     */
+    public int getWaitingTaskCount() {
+        return waitingTasks.size();
+    }
+
+    /**
+     * Gets the time in milliseconds a task has been in the wait queue.
+     *
+     * @param peonTask The task.
+     * @return The time in milliseconds the task has been in the wait queue or -1 if it is not in the wait queue.
+     */
+    public long getWaitTime(PeonTask peonTask) {
+        for(WaitingTask waitingTask : waitingTasks) {
+            if(waitingTask.peonTask == peonTask) {
+                return (System.nanoTime() - waitingTask.waitingSince) / 1000000;
+            }
         }
+        return -1;
+    }
+
+    /**
+     * Gets the number of tasks that have left the wait queue and been started.
+     *
+     * @return The number of tasks that have left the wait queue and been started.
+     */
+    public long getWaitedTaskCount() {
+        return waitedTaskCount.get();
+    }
+
+    /**
+     * Gets the total time in milliseconds the tasks that have left the wait queue spent in it. Divide by
+     * getWaitedTaskCount() to get the average wait time.
+     *
+     * @return The total time in milliseconds the tasks that have left the wait queue spent in it.
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime.get() / 1000000;
     }
 
     /**
@@ -167,7 +1220,13 @@ public abstract class AbstractPeonMaster implements PeonMaster, PropertyChangeLi
      * @param peonTask The task that will be added to the set of currently active tasks.
      */
     protected void addPeonTask(PeonTask peonTask) {
-        this.currentTasks.add(peonTask);
+        PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+        lock(descriptor);
+        try {
+            this.blockingIndex.add(peonTask);
+        } finally {
+            unlock(descriptor);
+        }
     }
 
     /**
@@ -176,7 +1235,13 @@ public abstract class AbstractPeonMaster implements PeonMaster, PropertyChangeLi
      * @param peonTask The task that will be removed from the set of currently active tasks.
      */
     protected void removePeonTask(PeonTask peonTask) {
-        this.currentTasks.remove(peonTask);
+        PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+        lock(descriptor);
+        try {
+            this.blockingIndex.remove(peonTask);
+        } finally {
+            unlock(descriptor);
+        }
     }
 
     /**
@@ -185,9 +1250,153 @@ public abstract class AbstractPeonMaster implements PeonMaster, PropertyChangeLi
      * @param e The event that will be dispatched.
      */
     protected void firePeonTaskEvent(PeonTaskEvent e) {
+        if(metricsSink != null) {
+            measure(e);
+        }
+        if(e.getId() == EventId.STARTED && !startTimeouts.isEmpty()) {
+            scheduleTimeout(e.getSource());
+        }
+        List<PeonTask> attached = null;
+        if(e.getId() == EventId.DONE && !duplicates.isEmpty()) {
+            // A listener that does the same work again once the task is done must start a new flight.
+            attached = endFlight(e.getSource());
+        }
         for(PeonTaskListener peonLTaskistener : peonTaskListeners) {
             peonLTaskistener.peonTaskEvent(e);
         }
+        if(attached != null) {
+            land(e.getSource(), attached, false);
+        } else if(!duplicates.isEmpty()) {
+            relayToDuplicates(e);
+        }
+    }
+
+    /**
+     * Reports a task event to the metrics sink. The first WAITING or STARTING event of a task reports its submission,
+     * the STARTED event its queue time and the DONE event its run time, both taken from the timings of the task.
+     *
+     * @param e The event that is about to be dispatched.
+     */
+    private void measure(PeonTaskEvent e) {
+        PeonMetricsSink metricsSink = this.metricsSink;
+        if(metricsSink == null) {
+            return;
+        }
+        PeonTask peonTask = e.getSource();
+        EventId id = e.getId();
+        if(id == EventId.WAITING || id == EventId.STARTING) {
+            if(measuredTasks.add(peonTask)) {
+                metricsSink.taskSubmitted(peonTask);
+            }
+        } else if(id == EventId.STARTED) {
+            if(measuredTasks.contains(peonTask)) {
+                metricsSink.taskStarted(peonTask, peonTask.getTimings().getQueuedTime(TimeUnit.NANOSECONDS));
+            }
+        } else if(id == EventId.DONE) {
+            long runNanos = (measuredTasks.remove(peonTask) ? peonTask.getTimings().getRunningTime(TimeUnit.NANOSECONDS) : -1);
+            metricsSink.taskDone(peonTask, peonTask.getState(), runNanos);
+        }
+    }
+
+    /**
+     * Gets the cache that holds the results of finished cacheable tasks.
+     *
+     * @return The result cache or null if results are not cached.
+     */
+    public PeonResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the cache that holds the results of finished CacheablePeonTasks. Cacheable tasks that are executed while
+     * their result is in the cache are finished with the cached result without occupying a worker thread.
+     *
+     * @param resultCache The result cache or null to stop caching results.
+     */
+    public void setResultCache(PeonResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Gets the sink that receives measurements of the executed tasks.
+     *
+     * @return The metrics sink or null if tasks are not measured.
+     */
+    public PeonMetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    /**
+     * Sets the sink that receives measurements of the executed tasks: when they are executed, how long they wait
+     * before a worker thread starts them, how long they run and how they end. Measurements are taken on the threads
+     * that fire the task events. Without a sink no measurements are taken and the only cost is a volatile read per event.
+     *
+     * @param metricsSink The metrics sink or null to stop measuring.
+     */
+    public void setMetricsSink(PeonMetricsSink metricsSink) {
+        this.metricsSink = metricsSink;
+        if(metricsSink == null) {
+            measuredTasks.clear();
+        }
+    }
+
+    /**
+     * Schedules the timeout of a task that has started running on a worker thread, if it has one.
+     *
+     * @param peonTask The task that has started.
+     */
+    private void scheduleTimeout(PeonTask peonTask) {
+        Long timeout = startTimeouts.remove(peonTask);
+        if(timeout != null) {
+            timeouts.put(peonTask, PeonTimer.schedule(peonTask, timeout));
+        }
+    }
+
+    /**
+     * Releases the timeout of a task that is done, fires a DONE event for it and completes its future if it was submitted.
+     *
+     * @param peonTask The task that is done.
+     */
+    private void fireDone(PeonTask peonTask) {
+        submissionTimeouts.remove(peonTask);
+        startTimeouts.remove(peonTask);
+        ScheduledFuture<?> timeout = timeouts.remove(peonTask);
+        if(timeout != null) {
+            timeout.cancel(false);
+        }
+        peonTask.getTimings().done();
+        firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.DONE));
+        PeonTaskFuture<?> future = futures.remove(peonTask);
+        if(future != null) {
+            future.completeFromTask();
+        }
+    }
+
+    /**
+     * Dispatches a batch of peon task events to all registered listeners. Batch listeners receive the whole batch
+     * in one call and other listeners receive the events one at a time.
+     *
+     * @param events The events that will be dispatched, in order.
+     */
+    protected void firePeonTaskEvents(List<PeonTaskEvent> events) {
+        if(events.isEmpty()) {
+            return;
+        }
+        if(metricsSink != null) {
+            for(PeonTaskEvent e : events) {
+                measure(e);
+            }
+        }
+        List<PeonTaskEvent> batch = Collections.unmodifiableList(events);
+        for(PeonTaskListener peonTaskListener : peonTaskListeners) {
+            if(peonTaskListener instanceof PeonTaskBatchListener) {
+                ((PeonTaskBatchListener)peonTaskListener).peonTaskEvents(batch);
+            } else {
+                for(PeonTaskEvent e : batch) {
+                    peonTaskListener.peonTaskEvent(e);
+                }
+            }
+        }
     }
 
     /**
@@ -211,4 +1420,24 @@ public abstract class AbstractPeonMaster implements PeonMaster, PropertyChangeLi
         this.peonTaskListeners.remove(peonTaskListener);
     }
 
+    /**
+     * A task in the wait queue.
+     */
+    private static class WaitingTask {
+
+        /**
+         * The waiting task.
+         */
+        private final PeonTask peonTask;
+        /**
+         * The System.nanoTime() the task was put in the wait queue.
+         */
+        private final long waitingSince = System.nanoTime();
+
+        public WaitingTask(PeonTask peonTask) {
+            this.peonTask = peonTask;
+        }
+
+    }
+
 }
@@ -2,6 +2,9 @@ package org.peon;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A task that can be run in a background worker thread by a peon.
@@ -17,6 +20,11 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	 * Keeps track of and sends events to registered property change listeners.
 	 */
 	private final PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
+	/**
+	 * True if any property change listeners are registered. Checked before property change events are created so
+	 * that changing the properties of a task nobody listens to creates no events.
+	 */
+	private volatile boolean hasListeners = false;
 	/**
 	 * A name that can be shown in the user interface, for example in a table that lists all the currently running tasks.
 	 */
@@ -29,11 +37,11 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	/**
 	 * The total number of operations for the task or -1 if the total number is unknown.
 	 */
-	private int total = -1;
+	private volatile long total = -1;
 	/**
 	 * The number of operations that have been performed by the task so far.
 	 */
-	private int progress = 0;
+	private final AtomicLong progress = new AtomicLong();
 	/**
 	 * The result of the task or null if the task does not produce a result.
 	 */
@@ -49,21 +57,39 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	/**
 	 * The current state of the task.
 	 */
-	private PeonTaskState state = PeonTaskState.PENDING;
+	private volatile PeonTaskState state = PeonTaskState.PENDING;
 	/**
 	 * A message describing the current status of the task.
 	 */
-	private String status;
+	private volatile String status;
+	/**
+	 * The priority of the task or null if the priority is given by the @Priority annotation of the task class.
+	 */
+	private volatile Integer priority;
 
 	/**
-	 * The System.currentTimeMillis() the task started executing,
+	 * Tells the code doing the work of the task that the task has been cancelled.
 	 */
-	private long startTime = -1;
+	private final CancellationToken cancellationToken = new CancellationToken();
+	/**
+	 * The thread that is executing the task or null if the task is not executing. Guarded by the task's monitor so that
+	 * cancel() never interrupts a thread that has already moved on to other work.
+	 */
+	private Thread workerThread;
 
 	/**
-	 * The System.currentTimeMillis() the task stopped executing or -1 of it has not yet stopped.
+	 * The System.currentTimeMillis() the task started executing or -1 if it has not started. Only used to tell the
+	 * wall clock time, all durations are measured with System.nanoTime() by the timings.
 	 */
-	private long endTime = -1;
+	private volatile long startTime = -1;
+	/**
+	 * The times the task spent in each phase of its life.
+	 */
+	private final PeonTaskTimings timings = new PeonTaskTimings();
+	/**
+	 * Estimates the rate of the task for getEstimatedTimeRemaining().
+	 */
+	private final ProgressRateEstimator rateEstimator = new ProgressRateEstimator();
 
 	/**
 	 * A name that can be shown in the user interface, for example in a table that lists all the currently running tasks.
@@ -83,7 +109,7 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	public void setName(String name) {
 		String oldName = this.name;
 		this.name = name;
-		propertyChangeSupport.firePropertyChange("name", oldName, this.name);
+		firePropertyChange("name", oldName, this.name);
 	}
 
 	/**
@@ -105,7 +131,7 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	public void setDescription(String description) {
 		String oldDescription = this.description;
 		this.description = description;
-		propertyChangeSupport.firePropertyChange("description", oldDescription, this.description);
+		firePropertyChange("description", oldDescription, this.description);
 	}
 
 	/**
@@ -116,7 +142,7 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	 * @return The total number of operations for the task or -1 if the total number is unknown.
 	 */
 	@Override
-	public int getTotal() {
+	public long getTotal() {
 		return total;
 	}
 
@@ -125,10 +151,12 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	 *
 	 * @param total The total number of operations the task will perform.
 	 */
-	protected void setTotal(int total) {
-		int oldTotal = this.total;
+	protected void setTotal(long total) {
+		long oldTotal = this.total;
 		this.total = total;
-		propertyChangeSupport.firePropertyChange("total", oldTotal, this.total);
+		if (hasListeners) {
+			propertyChangeSupport.firePropertyChange("total", oldTotal, total);
+		}
 	}
 
 	/**
@@ -137,21 +165,55 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	 * @return The number of operations that have been performed by the task so far.
 	 */
 	@Override
-	public int getProgress() {
-		return progress;
+	public long getProgress() {
+		return progress.get();
 	}
 
 	/**
 	 * Sets the total number of operations that have been performed by the task so far. This is a bound property.
-	 * It is recommended to use the progress() and progress(String) methods instead of using this method directly
-	 * since those methods check the current state of the task before progressing.
+	 * It is recommended to use the progress(), progress(long) and progress(String) methods instead of using this
+	 * method directly since those methods check the current state of the task before progressing.
 	 *
 	 * @param progress How far the task has progressed.
 	 */
-	protected void setProgress(int progress) {
-		int oldProgress = this.progress;
-		this.progress = progress;
-		propertyChangeSupport.firePropertyChange("progress", oldProgress, this.progress);
+	protected void setProgress(long progress) {
+		long oldProgress = this.progress.getAndSet(progress);
+		fireProgress(oldProgress, progress);
+	}
+
+	/**
+	 * Fires a progress event if any listeners are registered. No event object is created otherwise. The rate of the
+	 * progress events relayed to the peon master is limited by the peon, see ProgressThrottle.
+	 *
+	 * @param oldProgress The progress before the change.
+	 * @param newProgress The progress after the change.
+	 */
+	private void fireProgress(long oldProgress, long newProgress) {
+		if (hasListeners && oldProgress != newProgress) {
+			propertyChangeSupport.firePropertyChange("progress", Long.valueOf(oldProgress), Long.valueOf(newProgress));
+		}
+	}
+
+	/**
+	 * The priority of the task. Unless it has been set with setPriority(int) this is the value of the @Priority
+	 * annotation of the task class or 0 if the class has no such annotation.
+	 *
+	 * @return The priority of the task. Higher values are more urgent.
+	 */
+	@Override
+	public int getPriority() {
+		Integer priority = this.priority;
+		return (priority != null ? priority : PeonTaskDescriptor.forTask(this).getPriority());
+	}
+
+	/**
+	 * Sets the priority of the task, overriding the @Priority annotation of the task class. The priority should be
+	 * set before the task is executed.
+	 *
+	 * @param priority The priority of the task. Higher values are more urgent.
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
 	}
 
 	/**
@@ -173,7 +235,7 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	protected void setResult(T result) {
 		T oldResult = this.result;
 		this.result = result;
-		propertyChangeSupport.firePropertyChange("result", oldResult, this.result);
+		firePropertyChange("result", oldResult, this.result);
 	}
 
 	/**
@@ -198,7 +260,7 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	protected void setError(PeonError error) {
 		PeonError oldError = this.error;
 		this.error = error;
-		propertyChangeSupport.firePropertyChange("error", oldError, this.error);
+		firePropertyChange("error", oldError, this.error);
 	}
 
 	/**
@@ -222,7 +284,7 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	protected void setException(Exception exception) {
 		Exception oldException = this.exception;
 		this.exception = exception;
-		propertyChangeSupport.firePropertyChange("exception", oldException, this.exception);
+		firePropertyChange("exception", oldException, this.exception);
 	}
 
 	/**
@@ -245,7 +307,10 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	protected void setState(PeonTaskState peonTaskState) {
 		PeonTaskState oldState = this.state;
 		this.state = peonTaskState;
-		propertyChangeSupport.firePropertyChange("state", oldState, this.state);
+		if (peonTaskState == PeonTaskState.CANCELLED || peonTaskState == PeonTaskState.TIMED_OUT) {
+			cancellationToken.requestCancellation();
+		}
+		firePropertyChange("state", oldState, this.state);
 	}
 
 	/**
@@ -268,76 +333,124 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	protected void setStatus(String status) {
 		String oldStatus = this.status;
 		this.status = status;
-		propertyChangeSupport.firePropertyChange("status", oldStatus, this.status);
+		firePropertyChange("status", oldStatus, this.status);
 	}
 
 	/**
-	 * The System.currentTimeMillis() the task started executing.
+	 * The System.currentTimeMillis() the task started executing or -1 if it has not started.
 	 *
-	 * @return The time in milliseconds the task started executing.
+	 * @return The time in milliseconds the task started executing or -1 if it has not started.
 	 */
 	public long getStartTime() {
-		return 0;
+		return startTime;
 	}
 
 	/**
-	 * The System.currentTimeMillis() the task stopped executing or -1 of it has not yet stopped.
+	 * The System.currentTimeMillis() the task stopped executing or -1 of it has not yet stopped. The time is derived
+	 * from the start time and the monotonic running time, so it is not affected by changes to the wall clock while
+	 * the task was executing.
 	 *
 	 * @return The time in milliseconds the task stopped executing or -1 of it has not yet stopped.
 	 */
 	public long getEndTime() {
-		return 0;
+		if (!timings.isEnded()) {
+			return -1;
+		}
+		return startTime + timings.getRunningTime(TimeUnit.MILLISECONDS);
 	}
 
 	/**
-	 * The time in milliseconds the task has been executing.
+	 * The time in milliseconds the task has been executing or 0 if it has not started.
 	 *
 	 * @return The time in milliseconds the task has been executing.
 	 */
 	public long getTimeElapsed() {
-		if (endTime == -1) {
-			return System.currentTimeMillis() - this.startTime;
-		} else {
-			return this.endTime - this.startTime;
-		}
+		return Math.max(0, timings.getRunningTime(TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * The times the task spent in each phase of its life, measured with System.nanoTime().
+	 *
+	 * @return The timings of the task.
+	 */
+	@Override
+	public PeonTaskTimings getTimings() {
+		return timings;
 	}
 
 	/**
 	 * The time in milliseconds the task is estimated to keep running or -1 if the time can't be estimated.
-	 * The estimation is crude. It divides the elapsed time by the number of operations (=progress) have been
-	 * performed and multiplies the result with the number of operations left to do.
+	 * The number of operations left to do is divided by a smoothed rate of the task, an exponentially weighted
+	 * moving average of the number of operations performed per unit of time where recent speed counts the most. The
+	 * rate is sampled when the estimate is asked for, at most four times per second, so progressing the task costs
+	 * nothing extra and asking for the estimate often is cheap.
 	 *
-	 * If the total is unknown, this method will return -1.
+	 * If the total is unknown, the task is not executing or it has not progressed lately, this method will return -1.
 	 *
 	 * @return The time in milliseconds the task is estimated to keep running or -1 if the time can't be estimated.
 	 */
 	public long getEstimatedTimeRemaining() {
-		if (this.total == -1) {
+		long total = this.total;
+		if (total == -1 || !timings.isStarted() || timings.isEnded()) {
 			return -1;
 		}
-		if (getProgress() == 0) {
+		long progress = getProgress();
+		if (progress >= total) {
+			return 0;
+		}
+		double rate = rateEstimator.getRate(System.nanoTime(), progress);
+		if (rate <= 0) {
 			return -1;
 		}
-		long timePerOperation = getTimeElapsed() / getProgress();
-		return (getTotal() - getProgress()) * timePerOperation;
+		return TimeUnit.NANOSECONDS.toMillis((long) ((total - progress) / rate));
 	}
 
 	/**
 	 * Called by the peon in a worker thread. Calls, in order, activate(), doExecute(), exception() (if an
 	 * exception is thrown by doExecute()) and finish(). Subclasses should implement doExecute() to do the
 	 * actual work the task is supposed to do.
+	 *
+	 * While the task is executing, cancel() interrupts the worker thread. When execute() returns the worker thread
+	 * is no longer interrupted by the task and its interrupted status has been cleared, so the thread can safely go
+	 * on to execute other work.
 	 */
 	@Override
 	public void execute() {
 		this.startTime = System.currentTimeMillis();
-		activate();
+		timings.started();
+		rateEstimator.start(System.nanoTime(), getProgress());
+		synchronized (this) {
+			this.workerThread = Thread.currentThread();
+		}
 		try {
-			doExecute();
-		} catch (Exception e) {
-			exception(e);
+			activate();
+			if (getState() != PeonTaskState.ACTIVE) {
+				// The task was cancelled before it was executed.
+				timings.ended();
+				return;
+			}
+			Exception exception = null;
+			try {
+				doExecute();
+			} catch (CancellationException e) {
+				if (!isCancelled()) {
+					exception = e;
+				}
+			} catch (Exception e) {
+				exception = e;
+			}
+			// The work is over before the state changes, which may fire the DONE event right away.
+			timings.ended();
+			if (exception != null) {
+				exception(exception);
+			}
+			finish();
+		} finally {
+			synchronized (this) {
+				this.workerThread = null;
+			}
+			Thread.interrupted();
 		}
-		finish();
-		this.endTime = System.currentTimeMillis();
 	}
 
 	/**
@@ -351,20 +464,34 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	 * should be called after a unit has been performed, not before it is going to be performed.
 	 */
 	protected void progress() {
-		progress(this.status);
+		progress(1);
+	}
+
+	/**
+	 * Increments the progress property of the task by the given number of operations if the current state of the task
+	 * is PeonTaskState.ACTIVE. This method does not lock and can be called from several threads at the same time, and
+	 * calling it once for a batch of operations is cheaper than calling progress() once for each operation.
+	 *
+	 * @param operations The number of operations that have been performed since the task last progressed.
+	 */
+	protected void progress(long operations) {
+		if (state == PeonTaskState.ACTIVE) {
+			long newProgress = this.progress.addAndGet(operations);
+			fireProgress(newProgress - operations, newProgress);
+		}
 	}
 
 	/**
 	 * Increments the progress property of the task by 1 and sets the state message of the task to the provided string
 	 * if the current state of the task is PeonTaskState.ACTIVE.
 	 * The progress property indicates the number of units of work that have already been performed so this method
-	 * should be called after a unit has been performed, not before it is going to be performed. *
+	 * should be called after a unit has been performed, not before it is going to be performed.
 	 *
 	 * @param status The new status message of the task.
 	 */
-	protected synchronized void progress(String status) {
-		if (getState() == PeonTaskState.ACTIVE) {
-			setProgress(this.progress + 1);
+	protected void progress(String status) {
+		if (state == PeonTaskState.ACTIVE) {
+			progress(1);
 			setStatus(status);
 		}
 	}
@@ -380,15 +507,75 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	}
 
 	/**
-	 * Cancels the task and terminates the worker thread if the current state of the task is PeonTaskState.ACTIVE. This method
-	 * is public since it's intended to be used to allow the rest of the application to cancel a task by user interaction.
+	 * Cancels the task and terminates the worker thread if the current state of the task is PeonTaskState.ACTIVE. A task
+	 * that is cancelled while it is still PeonTaskState.PENDING will never be executed. This method is public since it's
+	 * intended to be used to allow the rest of the application to cancel a task by user interaction.
+	 *
+	 * Cancelling the task requests cancellation through its cancellation token and interrupts the worker thread if the
+	 * task is executing, unless the task cancels itself. Blocking calls in doExecute() are interrupted at once, while
+	 * tasks that compute in loops should call checkCancelled() now and then to stop promptly.
 	 */
 	public synchronized void cancel() {
-		if (getState() == PeonTaskState.ACTIVE) {
-			setState(PeonTaskState.CANCELLED);
+		stop(PeonTaskState.CANCELLED);
+	}
+
+	/**
+	 * Times out the task and terminates the worker thread if the current state of the task is PeonTaskState.PENDING or
+	 * PeonTaskState.ACTIVE. Called by the peon master when the timeout of the task expires. Timing out requests
+	 * cancellation through the cancellation token and interrupts the worker thread just like cancel() does.
+	 */
+	@Override
+	public synchronized void timeOut() {
+		stop(PeonTaskState.TIMED_OUT);
+	}
+
+	/**
+	 * Changes the state of the task to the given state, which is CANCELLED or TIMED_OUT, and interrupts the worker
+	 * thread if the task is executing in another thread, provided the current state of the task is
+	 * PeonTaskState.PENDING or PeonTaskState.ACTIVE.
+	 *
+	 * @param peonTaskState The state the task is stopped in.
+	 */
+	private void stop(PeonTaskState peonTaskState) {
+		if (getState() == PeonTaskState.PENDING || getState() == PeonTaskState.ACTIVE) {
+			setState(peonTaskState);
+			if (workerThread != null && workerThread != Thread.currentThread()) {
+				workerThread.interrupt();
+			}
 		}
 	}
 
+	/**
+	 * Gets the cancellation token of the task. The token can be handed to code that does work for the task so that it
+	 * can stop when the task is cancelled.
+	 *
+	 * @return The cancellation token of the task.
+	 */
+	public CancellationToken getCancellationToken() {
+		return cancellationToken;
+	}
+
+	/**
+	 * Checks if the task has been cancelled or timed out. This is a single volatile read and cheap enough to call in
+	 * tight loops.
+	 *
+	 * @return True if the task has been cancelled or timed out.
+	 */
+	protected boolean isCancelled() {
+		return cancellationToken.isCancellationRequested();
+	}
+
+	/**
+	 * Throws a CancellationException if the task has been cancelled or timed out, which execute() catches and ignores. Tasks that
+	 * compute in loops should call this method now and then so that a cancelled task stops using the worker thread
+	 * promptly. This is a single volatile read and cheap enough to call in tight loops.
+	 *
+	 * @throws CancellationException if the task has been cancelled or timed out.
+	 */
+	protected void checkCancelled() {
+		cancellationToken.throwIfCancellationRequested();
+	}
+
 	/**
 	 * This method should be used when an expected sort of error occurs while the task is running. If the current state of
 	 * the task is PeonTaskState.ACTIVE, this method creates an error and sets it and sets the state of the task to PeonTaskState.FAILED.
@@ -427,6 +614,80 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 		}
 	}
 
+	/**
+	 * Restarts the estimate of the time remaining from the current progress, so that the progress a task restores
+	 * from a checkpoint does not count as speed.
+	 */
+	void restartEstimate() {
+		rateEstimator.start(System.nanoTime(), getProgress());
+	}
+
+	/**
+	 * Copies the progress, total and status of another task that does the same work, so that a duplicate task that
+	 * is not executed itself shows how far the task in flight has come.
+	 *
+	 * @param primary The task in flight.
+	 */
+	void mirror(PeonTask<?> primary) {
+		setTotal(primary.getTotal());
+		setProgress(primary.getProgress());
+		setStatus(primary.getStatus());
+	}
+
+	/**
+	 * Finishes the task with a result that was computed earlier if the task is still pending, without executing it.
+	 *
+	 * @param result The result of the task.
+	 * @return True if the task was finished with the result, false if it was not pending.
+	 */
+	synchronized boolean complete(T result) {
+		if (getState() != PeonTaskState.PENDING) {
+			return false;
+		}
+		setResult(result);
+		setState(PeonTaskState.FINISHED);
+		return true;
+	}
+
+	/**
+	 * Takes over the outcome of another task that did the same work if this task is still pending. The task gets the
+	 * state and the result, error or exception of the other task, or is cancelled if the other task is not done.
+	 *
+	 * @param primary The task that did the work.
+	 */
+	synchronized void adopt(PeonTask<T> primary) {
+		if (getState() != PeonTaskState.PENDING) {
+			return;
+		}
+		mirror(primary);
+		PeonTaskState primaryState = primary.getState();
+		if (primaryState == PeonTaskState.FINISHED) {
+			setResult(primary.getResult());
+		} else if (primaryState == PeonTaskState.FAILED) {
+			setError(primary.getError());
+		} else if (primaryState == PeonTaskState.EXCEPTION) {
+			setException(primary.getException());
+		} else if (primaryState != PeonTaskState.TIMED_OUT) {
+			primaryState = PeonTaskState.CANCELLED;
+		}
+		setState(primaryState);
+	}
+
+	/**
+	 * Fires a change of a bound property of this class or of a property that is defined by a subclass. The peons relay
+	 * the change to the peon master like the changes of the properties defined in this class. No event object is
+	 * created if there are no listeners.
+	 *
+	 * @param propertyName The name of the property that changed.
+	 * @param oldValue The value of the property before the change.
+	 * @param newValue The value of the property after the change.
+	 */
+	protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+		if (hasListeners) {
+			propertyChangeSupport.firePropertyChange(propertyName, oldValue, newValue);
+		}
+	}
+
 	/**
 	 * Adds a property change listener to the task. Only peons that run the task are intended to be added here.
 	 * Be aware, if non peon listeners are added, that events dispatched to these listeners are fired
@@ -437,6 +698,7 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	@Override
 	public void addPropertyChangeListener(PropertyChangeListener propertyChangeListener) {
 		propertyChangeSupport.addPropertyChangeListener(propertyChangeListener);
+		hasListeners = propertyChangeSupport.getPropertyChangeListeners().length > 0;
 	}
 
 	/**
@@ -447,6 +709,7 @@ public abstract class AbstractPeonTask<T extends Object> implements PeonTask<T>
 	@Override
 	public void removePropertyChangeListener(PropertyChangeListener propertyChangeListener) {
 		propertyChangeSupport.removePropertyChangeListener(propertyChangeListener);
+		hasListeners = propertyChangeSupport.getPropertyChangeListeners().length > 0;
 	}
 
 }
@@ -0,0 +1,208 @@
+package org.peon;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.peon.annotation.MaxConcurrent;
+
+/**
+ * Indexes the currently active tasks of a peon master by category, by class and by the blocking annotations
+ * present on their classes, so that checking if a task class is blocked by any active task takes constant
+ * time no matter how many tasks are active.
+ *
+ * A task of class A is blocked by an active task of class B if either class is @ApplicationBlocking, if either
+ * class is @CategoryBlocking and both classes have the same @Category, or if either class is @ClassBlocking and
+ * A and B are the same class. A task of class A is also blocked if A has a @MaxConcurrent limit and the number of
+ * active tasks of class A, or of the category of A if the limit is per category, has reached the limit.
+ *
+ * An index of waiting tasks keeps waiting tasks in order: there a single task of the same class or category blocks
+ * a task with a @MaxConcurrent limit, so that later tasks can not start ahead of it while it waits for a free slot.
+ *
+ * The index may be read from any thread at any time. Changes that involve the same category must be serialized
+ * by the caller, and changes that involve @ApplicationBlocking tasks must be serialized with all other changes,
+ * but changes in different categories may be made concurrently.
+ */
+class BlockingIndex {
+
+    /**
+     * All active tasks.
+     */
+    private final Set<PeonTask> tasks = newSet();
+    /**
+     * Active tasks whose class is @ApplicationBlocking.
+     */
+    private final Set<PeonTask> applicationBlockingTasks = newSet();
+    /**
+     * Active tasks by category.
+     */
+    private final Map<String, Set<PeonTask>> tasksByCategory = new ConcurrentHashMap<String, Set<PeonTask>>();
+    /**
+     * Active tasks whose class is @CategoryBlocking by category.
+     */
+    private final Map<String, Set<PeonTask>> categoryBlockingTasksByCategory = new ConcurrentHashMap<String, Set<PeonTask>>();
+    /**
+     * Active tasks by class.
+     */
+    private final Map<Class<?>, Set<PeonTask>> tasksByClass = new ConcurrentHashMap<Class<?>, Set<PeonTask>>();
+    /**
+     * Active tasks whose class is @ClassBlocking by class.
+     */
+    private final Map<Class<?>, Set<PeonTask>> classBlockingTasksByClass = new ConcurrentHashMap<Class<?>, Set<PeonTask>>();
+    /**
+     * True if the index holds waiting tasks rather than active tasks.
+     */
+    private final boolean waiting;
+
+    /**
+     * Creates an index of active tasks.
+     */
+    public BlockingIndex() {
+        this(false);
+    }
+
+    /**
+     * Creates an index of active or waiting tasks.
+     *
+     * @param waiting True if the index will hold waiting tasks, which block every task with a @MaxConcurrent limit
+     *                that they share the limit with.
+     */
+    public BlockingIndex(boolean waiting) {
+        this.waiting = waiting;
+    }
+
+    /**
+     * Adds an active task to the index.
+     *
+     * @param peonTask The task that will be added.
+     */
+    public void add(PeonTask peonTask) {
+        if(!tasks.add(peonTask)) {
+            return;
+        }
+        PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+        if(descriptor.isApplicationBlocking()) {
+            applicationBlockingTasks.add(peonTask);
+        }
+        add(tasksByCategory, descriptor.getCategory(), peonTask);
+        if(descriptor.isCategoryBlocking()) {
+            add(categoryBlockingTasksByCategory, descriptor.getCategory(), peonTask);
+        }
+        add(tasksByClass, descriptor.getTaskClass(), peonTask);
+        if(descriptor.isClassBlocking()) {
+            add(classBlockingTasksByClass, descriptor.getTaskClass(), peonTask);
+        }
+    }
+
+    /**
+     * Removes a task from the index.
+     *
+     * @param peonTask The task that will be removed.
+     */
+    public void remove(PeonTask peonTask) {
+        if(!tasks.remove(peonTask)) {
+            return;
+        }
+        PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+        applicationBlockingTasks.remove(peonTask);
+        remove(tasksByCategory, descriptor.getCategory(), peonTask);
+        remove(categoryBlockingTasksByCategory, descriptor.getCategory(), peonTask);
+        remove(tasksByClass, descriptor.getTaskClass(), peonTask);
+        remove(classBlockingTasksByClass, descriptor.getTaskClass(), peonTask);
+    }
+
+    /**
+     * Finds an active task that blocks tasks with the given descriptor from running.
+     *
+     * @param descriptor The descriptor of the class of the task that wants to run.
+     * @return An active task that blocks the task from running or null if there is no such task.
+     */
+    public PeonTask getBlockingTaskFor(PeonTaskDescriptor descriptor) {
+        if(descriptor.isApplicationBlocking()) {
+            return first(tasks);
+        }
+        PeonTask blockingTask = first(applicationBlockingTasks);
+        if(blockingTask == null) {
+            blockingTask = first(descriptor.isCategoryBlocking() ? tasksByCategory : categoryBlockingTasksByCategory, descriptor.getCategory());
+        }
+        if(blockingTask == null) {
+            blockingTask = first(descriptor.isClassBlocking() ? tasksByClass : classBlockingTasksByClass, descriptor.getTaskClass());
+        }
+        if(blockingTask == null && descriptor.getMaxConcurrent() > 0) {
+            Set<PeonTask> set = (descriptor.getMaxConcurrentScope() == MaxConcurrent.Scope.CATEGORY
+                                 ? tasksByCategory.get(descriptor.getCategory()) : tasksByClass.get(descriptor.getTaskClass()));
+            if(set != null && (waiting || set.size() >= descriptor.getMaxConcurrent())) {
+                blockingTask = first(set);
+            }
+        }
+        return blockingTask;
+    }
+
+    /**
+     * Gets all active tasks.
+     *
+     * @return An unmodifiable view of all active tasks.
+     */
+    public Set<PeonTask> getTasks() {
+        return Collections.unmodifiableSet(tasks);
+    }
+
+    /**
+     * Gets the number of active tasks in a category.
+     *
+     * @param category The category.
+     * @return The number of active tasks in the category.
+     */
+    public int getTaskCount(String category) {
+        return size(tasksByCategory, category);
+    }
+
+    /**
+     * Gets the number of active tasks of a class.
+     *
+     * @param clazz The task class.
+     * @return The number of active tasks of the class.
+     */
+    public int getTaskCount(Class<?> clazz) {
+        return size(tasksByClass, clazz);
+    }
+
+    private static <K> void add(Map<K, Set<PeonTask>> map, K key, PeonTask peonTask) {
+        Set<PeonTask> set = map.get(key);
+        if(set == null) {
+            set = newSet();
+            map.put(key, set);
+        }
+        set.add(peonTask);
+    }
+
+    private static <K> void remove(Map<K, Set<PeonTask>> map, K key, PeonTask peonTask) {
+        Set<PeonTask> set = map.get(key);
+        if(set != null && set.remove(peonTask) && set.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    private static <K> PeonTask first(Map<K, Set<PeonTask>> map, K key) {
+        Set<PeonTask> set = map.get(key);
+        return (set != null ? first(set) : null);
+    }
+
+    private static <K> int size(Map<K, Set<PeonTask>> map, K key) {
+        Set<PeonTask> set = map.get(key);
+        return (set != null ? set.size() : 0);
+    }
+
+    private static PeonTask first(Set<PeonTask> set) {
+        for(PeonTask peonTask : set) {
+            return peonTask;
+        }
+        return null;
+    }
+
+    private static Set<PeonTask> newSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<PeonTask, Boolean>());
+    }
+
+}
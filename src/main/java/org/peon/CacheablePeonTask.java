@@ -0,0 +1,24 @@
+package org.peon;
+
+/**
+ * A read-only task whose result only depends on its cache key, for example a lookup or a report for the given
+ * parameters. When the peon master has a result cache, the result of a finished cacheable task is cached and a
+ * later task of the same class with an equal cache key is completed with the cached result at once, without being
+ * run, and fires a CACHED event followed by FINISHED and DONE.
+ *
+ * Caching applies to tasks that extend AbstractPeonTask and are executed with execute(), submit() or
+ * execute(PeonTask, long, TimeUnit). Results that are null are not cached.
+ *
+ * @param <T> The type of the result of the task.
+ */
+public interface CacheablePeonTask<T> extends PeonTask<T> {
+
+    /**
+     * The key that tells which tasks of the same class produce the same result. The key must implement equals() and
+     * hashCode() and must not change while the task is executing.
+     *
+     * @return The cache key of the task or null if the result of the task should not be cached.
+     */
+    public Object getCacheKey();
+
+}
@@ -0,0 +1,46 @@
+package org.peon;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A token that tells the code doing the work of a task that the task has been cancelled. Each AbstractPeonTask has a
+ * token that it can hand to the code it calls, so that work deep down in helper methods or libraries can stop
+ * promptly without having a reference to the task itself. Checking the token is a single volatile read.
+ */
+public final class CancellationToken {
+
+    /**
+     * True once cancellation of the task has been requested, either by cancelling the task or by timing it out.
+     */
+    private volatile boolean cancellationRequested = false;
+
+    /**
+     * Checks if cancellation of the task has been requested.
+     *
+     * @return True if cancellation of the task has been requested.
+     */
+    public boolean isCancellationRequested() {
+        return cancellationRequested;
+    }
+
+    /**
+     * Throws a CancellationException if cancellation of the task has been requested. AbstractPeonTask does not treat
+     * a CancellationException thrown out of doExecute() after the task has been cancelled as an exception, so calling
+     * this method is the easiest way to stop the work in a cancelled task.
+     *
+     * @throws CancellationException if cancellation of the task has been requested.
+     */
+    public void throwIfCancellationRequested() {
+        if(cancellationRequested) {
+            throw new CancellationException("The task has been cancelled.");
+        }
+    }
+
+    /**
+     * Requests cancellation of the task.
+     */
+    void requestCancellation() {
+        cancellationRequested = true;
+    }
+
+}
@@ -0,0 +1,182 @@
+package org.peon;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.peon.checkpoint.PeonCheckpoint;
+import org.peon.checkpoint.PeonCheckpointStore;
+
+/**
+ * A long running task that saves its progress to a checkpoint store now and then, so that a task that is cancelled,
+ * ends with an exception or is stopped with the application does not have to start over. A new task with the same
+ * checkpoint key resumes from the last checkpoint instead of from the start.
+ *
+ * Subclasses implement doExecute(String) to do the work from the given checkpoint state, or from the start if the
+ * state is null, and call checkpoint(String) with the state they need to resume, for example the index of the next
+ * item to process, whenever isCheckpointDue() returns true. The progress and total of the task are saved with the
+ * state and restored before doExecute(String) is called. The checkpoint is deleted when the task finishes.
+ *
+ * To resume after the application has been restarted, also implement RestartablePeonTask with restart data that
+ * holds the checkpoint key, so that a PeonTaskJournal can execute the task again.
+ *
+ * @param <T> The type of the result that will be provided by the task.
+ */
+public abstract class CheckpointingPeonTask<T extends Object> extends AbstractPeonTask<T> {
+
+	/**
+	 * The store that keeps the checkpoints.
+	 */
+	private final PeonCheckpointStore checkpointStore;
+	/**
+	 * The key of the checkpoints of the task in the store.
+	 */
+	private final String checkpointKey;
+	/**
+	 * The time in nanoseconds between two checkpoints.
+	 */
+	private volatile long checkpointInterval = TimeUnit.SECONDS.toNanos(30);
+	/**
+	 * The System.nanoTime() the last checkpoint was taken, or the task started executing if none has been taken.
+	 */
+	private volatile long checkpointedAt;
+	/**
+	 * The checkpoint the task resumed from or null if it started from the start.
+	 */
+	private volatile PeonCheckpoint resumedFrom;
+	/**
+	 * The last error that occurred while loading, saving or deleting a checkpoint, or null if there was none.
+	 */
+	private volatile IOException checkpointError;
+
+	/**
+	 * Creates a task that keeps its checkpoints in the given store.
+	 *
+	 * @param checkpointStore The store that keeps the checkpoints.
+	 * @param checkpointKey The key of the checkpoints of the task, which must be the same for the task that resumes
+	 *                      the work and unique among the tasks that use the store.
+	 */
+	protected CheckpointingPeonTask(PeonCheckpointStore checkpointStore, String checkpointKey) {
+		this.checkpointStore = checkpointStore;
+		this.checkpointKey = checkpointKey;
+	}
+
+	/**
+	 * Gets the store that keeps the checkpoints.
+	 *
+	 * @return The checkpoint store.
+	 */
+	public PeonCheckpointStore getCheckpointStore() {
+		return checkpointStore;
+	}
+
+	/**
+	 * Gets the key of the checkpoints of the task.
+	 *
+	 * @return The checkpoint key.
+	 */
+	public String getCheckpointKey() {
+		return checkpointKey;
+	}
+
+	/**
+	 * Gets the time between two checkpoints.
+	 *
+	 * @param unit The unit of the returned time.
+	 * @return The checkpoint interval.
+	 */
+	public long getCheckpointInterval(TimeUnit unit) {
+		return unit.convert(checkpointInterval, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Sets the time between two checkpoints. A short interval loses less work when the task stops but costs more
+	 * writes to the store. The default is 30 seconds.
+	 *
+	 * @param checkpointInterval The time between two checkpoints.
+	 * @param unit The unit of the interval.
+	 */
+	public void setCheckpointInterval(long checkpointInterval, TimeUnit unit) {
+		this.checkpointInterval = unit.toNanos(checkpointInterval);
+	}
+
+	/**
+	 * Gets the checkpoint the task resumed from.
+	 *
+	 * @return The checkpoint the task resumed from or null if the task started from the start or has not started.
+	 */
+	public PeonCheckpoint getResumedFrom() {
+		return resumedFrom;
+	}
+
+	/**
+	 * Gets the last error that occurred while loading, saving or deleting a checkpoint. The checkpoints only save
+	 * work, so an error does not stop the task.
+	 *
+	 * @return The last checkpoint error or null if there was none.
+	 */
+	public IOException getCheckpointError() {
+		return checkpointError;
+	}
+
+	/**
+	 * Loads the last checkpoint, restores the progress and total of the task from it and calls doExecute(String)
+	 * with its state. The checkpoint is deleted if the task is still active when doExecute(String) returns, since
+	 * the task will then finish.
+	 */
+	@Override
+	protected final void doExecute() {
+		PeonCheckpoint checkpoint = null;
+		try {
+			checkpoint = checkpointStore.load(checkpointKey);
+		} catch (IOException e) {
+			this.checkpointError = e;
+		}
+		this.resumedFrom = checkpoint;
+		if (checkpoint != null) {
+			setTotal(checkpoint.getTotal());
+			setProgress(checkpoint.getProgress());
+			restartEstimate();
+		}
+		this.checkpointedAt = System.nanoTime();
+		doExecute(checkpoint != null ? checkpoint.getState() : null);
+		if (getState() == PeonTaskState.ACTIVE) {
+			try {
+				checkpointStore.delete(checkpointKey);
+			} catch (IOException e) {
+				this.checkpointError = e;
+			}
+		}
+	}
+
+	/**
+	 * Implement this method to do the work the task is supposed to do, starting from the given checkpoint state.
+	 *
+	 * @param checkpointState The state of the last checkpoint or null if the task starts from the start.
+	 */
+	protected abstract void doExecute(String checkpointState);
+
+	/**
+	 * Checks if the checkpoint interval has passed since the last checkpoint was taken.
+	 *
+	 * @return True if the task should take a checkpoint.
+	 */
+	protected boolean isCheckpointDue() {
+		return System.nanoTime() - checkpointedAt >= checkpointInterval;
+	}
+
+	/**
+	 * Saves a checkpoint with the current progress and total of the task and the given state. The state should
+	 * describe the work that has been done when the progress is what it is now.
+	 *
+	 * @param state The state the task needs to resume from this point, never null.
+	 */
+	protected void checkpoint(String state) {
+		try {
+			checkpointStore.save(checkpointKey, new PeonCheckpoint(getProgress(), getTotal(), state, System.currentTimeMillis()));
+		} catch (IOException e) {
+			this.checkpointError = e;
+		}
+		this.checkpointedAt = System.nanoTime();
+	}
+
+}
@@ -0,0 +1,25 @@
+package org.peon;
+
+/**
+ * A task that does the same work as any other task of the same class with an equal deduplication key, for example
+ * a lookup with the same parameters. When such a task is executed while an equal task is waiting or running in the
+ * peon master, the new task is not run. It is attached to the task in flight instead and receives its STARTED,
+ * PROGRESSED and STATUS events while it runs, and when it is done, its outcome and its DONE event.
+ *
+ * Deduplication applies to tasks that extend AbstractPeonTask and are executed with execute(), submit() or
+ * execute(PeonTask, long, TimeUnit). A duplicate that is cancelled by its caller stays cancelled, while cancelling
+ * the task in flight cancels all of its duplicates.
+ *
+ * @param <T> The type of the result of the task.
+ */
+public interface DeduplicatedPeonTask<T> extends PeonTask<T> {
+
+    /**
+     * The key that tells which tasks of the same class do the same work. The key must implement equals() and
+     * hashCode() and must not change while the task is executing.
+     *
+     * @return The deduplication key of the task or null if the task should not be deduplicated.
+     */
+    public Object getDeduplicationKey();
+
+}
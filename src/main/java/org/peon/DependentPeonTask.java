@@ -0,0 +1,20 @@
+package org.peon;
+
+/**
+ * A task in a PeonTaskGraph that needs the results of its prerequisites. Before the task is executed, the peon
+ * master hands it each of its prerequisites, all of which are in the state PeonTaskState.FINISHED.
+ *
+ * @param <T> The type of the result of the task.
+ */
+public interface DependentPeonTask<T> extends PeonTask<T> {
+
+    /**
+     * Called by the peon master for each prerequisite of this task before this task is executed. The method is
+     * called on the thread that received the DONE event of the last prerequisite to finish, or on the thread that
+     * executed the graph.
+     *
+     * @param prerequisite A prerequisite of this task that has finished.
+     */
+    public void prerequisiteFinished(PeonTask<?> prerequisite);
+
+}
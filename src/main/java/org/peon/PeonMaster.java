@@ -1,15 +1,21 @@
 package org.peon;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import org.peon.event.PeonTaskEvent;
 import org.peon.event.PeonTaskListener;
+import org.peon.event.PeonTaskEvent.EventId;
 
 /**
  * The PeonMaster keeps track of the active peons and tasks and relay events from the
  * running tasks to listeners on the GUI event thread. All tasks should be run by calling
  * the execute() method in a PeonMaster.
  *
- * This class is not threadsafe and its methods should only be called from the GUI event thread.
+ * Unless an implementation states that it is threadsafe, its methods should only be called from the GUI event thread.
  *
  * It is recommended to use a singleton peon master in the application as each peon master
  * can only check for blocking tasks against the tasks it runs itself.
@@ -20,10 +26,68 @@ public interface PeonMaster {
      * Executes a task in a background worker thread.
      *
      * @param peonTask The task that will be executed.
-     * @throws PeonTaskConcurrencyException if the task is blocked from running by another currenly running task.
+     * @throws PeonTaskConcurrencyException if the task is blocked from running by another currenly running task
+     *                                      and the peon master does not queue blocked tasks.
      */
     public void execute(PeonTask peonTask);
 
+    /**
+     * Executes a task in a background worker thread and returns a future that is completed with the outcome of the
+     * task when it is done. The future completes with the result of the task if it finished, with a
+     * PeonTaskFailedException if it failed, with the exception thrown by the task if it ended with an exception, with
+     * a TimeoutException if it timed out and is cancelled if the task was cancelled. Cancelling the future cancels the task.
+     *
+     * The default implementation listens for the DONE event of the task and executes it with execute(PeonTask), so
+     * that peon masters written before tasks could be submitted keep working.
+     *
+     * @param peonTask The task that will be executed.
+     * @param <T> The type of the result of the task.
+     * @return A future that is completed when the task is done.
+     * @throws PeonTaskConcurrencyException if the task is blocked from running by another currenly running task
+     *                                      and the peon master does not queue blocked tasks.
+     */
+    public default <T> CompletableFuture<T> submit(final PeonTask<T> peonTask) {
+        final PeonTaskFuture<T> future = new PeonTaskFuture<T>(peonTask);
+        PeonTaskListener doneListener = new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getSource() == peonTask && e.getId() == EventId.DONE) {
+                    removePeonTaskListener(this);
+                    future.completeFromTask();
+                }
+            }
+        };
+        addPeonTaskListener(doneListener);
+        try {
+            execute(peonTask);
+        } catch(RuntimeException e) {
+            removePeonTaskListener(doneListener);
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Executes a collection of tasks in background worker threads in a single admission pass. Events for the tasks
+     * may be fired as batches to listeners that implement PeonTaskBatchListener. Each task is otherwise handled as
+     * if it was executed with execute(PeonTask).
+     *
+     * The default implementation executes the tasks one at a time with execute(PeonTask), so that peon masters written
+     * before tasks could be executed in batches keep working. The tasks before a blocked task have already been
+     * executed when it throws.
+     *
+     * @param peonTasks The tasks that will be executed, in order.
+     * @throws PeonTaskConcurrencyException if a task is blocked from running by another currenly running task, or by
+     *                                      a task before it in the collection, and the peon master does not queue
+     *                                      blocked tasks. Unless the implementation states otherwise, none of the
+     *                                      tasks are executed in that case.
+     */
+    public default void executeAll(Collection<? extends PeonTask> peonTasks) {
+        for(PeonTask peonTask : peonTasks) {
+            execute(peonTask);
+        }
+    }
+
     /**
      * Returns the set of all currently running tasks in this PeonMaster.
      *
@@ -32,9 +96,23 @@ public interface PeonMaster {
     public Set<PeonTask> getCurrentTasks();
 
     /**
-     * Checks the class for @ApplicationBlocking, @CategoryBlocking or @ClassBlocking annotations and checks the set
-     * of currently running tasks to see if any of them will prevent a task of the given class from running, depending
-     * on which if any of those annotations are present on the class.
+     * Returns the tasks that are waiting for the currently running tasks that block them to be done,
+     * in the order they were executed.
+     *
+     * The default implementation returns an empty list, for peon masters that reject blocked tasks instead of
+     * queueing them.
+     *
+     * @return A list of the waiting tasks in this PeonMaster.
+     */
+    public default List<PeonTask> getWaitingTasks() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Checks the class for @ApplicationBlocking, @CategoryBlocking, @ClassBlocking or @MaxConcurrent annotations and
+     * checks the set of currently running tasks to see if any of them will prevent a task of the given class from
+     * running, depending on which if any of those annotations are present on the class. A task class with a
+     * limit is blocked by one of the running tasks that fill it.
      *
      * @param clazz Will a task of this class be allowed to run or will it be blocked?
      * @return The currently running task that blocks a task of the given class from running or null if there is no such task.
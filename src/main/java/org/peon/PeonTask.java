@@ -31,14 +31,26 @@ public interface PeonTask<T extends Object> {
      *
      * @return The total number of operations for the task or -1 if the total number is unknown.
      */
-    public int getTotal();
+    public long getTotal();
 
     /**
      * The number of operations that have been performed by the task so far.
      *
      * @return The number of operations that have been performed by the task so far.
      */
-    public int getProgress();
+    public long getProgress();
+
+    /**
+     * The priority of the task. When the peon master limits the number of tasks that work at the same time, tasks
+     * with a higher priority are started before tasks with a lower priority that have been waiting for about as long.
+     *
+     * The default implementation returns 0, so that implementations written before tasks had priorities keep working.
+     *
+     * @return The priority of the task. Higher values are more urgent.
+     */
+    public default int getPriority() {
+        return 0;
+    }
 
     /**
      * Called by the peon in a worker thread. The actual work that is to be done by the task should be done in (or called by)
@@ -51,6 +63,15 @@ public interface PeonTask<T extends Object> {
      */
     public void cancel();
 
+    /**
+     * Stops the task and terminates the worker thread because the task did not finish within the time it was allowed
+     * to take. Called by the peon master when the timeout of the task expires. The default implementation cancels
+     * the task, so that implementations written before tasks could time out keep working.
+     */
+    public default void timeOut() {
+        cancel();
+    }
+
     /**
      * Gets the result of the task if the task produces a result. This should be the object(s) the rest of the
      * application is interested in when it runs the task.
@@ -92,9 +113,9 @@ public interface PeonTask<T extends Object> {
     public String getStatus();
 
     /**
-     * The System.currentTimeMillis() the task started executing.
+     * The System.currentTimeMillis() the task started executing or -1 if it has not started.
      *
-     * @return The time in milliseconds the task started executing.
+     * @return The time in milliseconds the task started executing or -1 if it has not started.
      */
     public long getStartTime();
 
@@ -119,6 +140,18 @@ public interface PeonTask<T extends Object> {
      */
     public long getEstimatedTimeRemaining();
 
+    /**
+     * The times the task spent being queued, running and having its DONE event delivered, measured with
+     * System.nanoTime(). The timings are stamped by the task and by the peon master that executes it, so an
+     * implementation should return the same object every time. The default implementation returns new, empty
+     * timings on every call, so that implementations written before tasks were timed keep working without being timed.
+     *
+     * @return The timings of the task.
+     */
+    public default PeonTaskTimings getTimings() {
+        return new PeonTaskTimings();
+    }
+
     /**
      * Adds a property change listener to the task. Only peons that run the task are intended to be added here.
      * Be aware, if non peon listeners are added, that events dispatched to these listeners are fired
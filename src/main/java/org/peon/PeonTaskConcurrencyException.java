@@ -3,11 +3,13 @@ package org.peon;
 /**
  * Exception that should be thrown by the peon master when it is asked to execute a task that is blocked from executing
  * by another currently running task with the right (or wrong?) combinations of @ApplicationBlocking, @CategoryBlocking
- * and/or @ClassBlocking annotations present on the two task classes.
+ * and/or @ClassBlocking annotations present on the two task classes, or by one of the running tasks that have reached
+ * the limit of the @MaxConcurrent annotation on the class of the blocked task.
  *
  * It is recommended that applications use the getBlockingTask() methods in the peon master to check that the task is
  * allowed to be executed before executing it rather than catching this exception. This exception should indicate incorrect
- * behavior in the application.
+ * behavior in the application. Applications that would rather have blocked tasks wait for their turn can enable
+ * queueing of blocked tasks in the peon master, in which case this exception is not thrown.
  */
 public class PeonTaskConcurrencyException extends RuntimeException {
 
@@ -0,0 +1,195 @@
+package org.peon;
+
+import org.peon.annotation.ApplicationBlocking;
+import org.peon.annotation.Category;
+import org.peon.annotation.CategoryBlocking;
+import org.peon.annotation.ClassBlocking;
+import org.peon.annotation.MaxConcurrent;
+import org.peon.annotation.Priority;
+import org.peon.annotation.Timeout;
+
+/**
+ * Describes the concurrency rules of a task class as declared by its annotations, which may be any of
+ * the @ApplicationBlocking, @CategoryBlocking, @ClassBlocking, @MaxConcurrent, @Category, @Priority and @Timeout
+ * annotations. The annotations are read once per class and the descriptor is cached, so the peon master does not have
+ * to use reflection every time a task is executed.
+ */
+public final class PeonTaskDescriptor {
+
+    /**
+     * The cached descriptors of all task classes that have been described so far.
+     */
+    private static final ClassValue<PeonTaskDescriptor> descriptors = new ClassValue<PeonTaskDescriptor>() {
+        @Override
+        protected PeonTaskDescriptor computeValue(Class<?> clazz) {
+            return new PeonTaskDescriptor(clazz);
+        }
+    };
+
+    /**
+     * The described task class.
+     */
+    private final Class<?> taskClass;
+    /**
+     * True if the task class is annotated with @ApplicationBlocking.
+     */
+    private final boolean applicationBlocking;
+    /**
+     * True if the task class is annotated with @CategoryBlocking.
+     */
+    private final boolean categoryBlocking;
+    /**
+     * True if the task class is annotated with @ClassBlocking.
+     */
+    private final boolean classBlocking;
+    /**
+     * The value of the @MaxConcurrent annotation of the task class or 0 if it has none.
+     */
+    private final int maxConcurrent;
+    /**
+     * The scope of the @MaxConcurrent annotation of the task class or null if it has none.
+     */
+    private final MaxConcurrent.Scope maxConcurrentScope;
+    /**
+     * The value of the @Category annotation of the task class or an empty string if it has none.
+     */
+    private final String category;
+    /**
+     * The value of the @Priority annotation of the task class or 0 if it has none.
+     */
+    private final int priority;
+    /**
+     * The value of the @Timeout annotation of the task class in nanoseconds or 0 if it has none.
+     */
+    private final long timeout;
+
+    private PeonTaskDescriptor(Class<?> taskClass) {
+        this.taskClass = taskClass;
+        this.applicationBlocking = taskClass.isAnnotationPresent(ApplicationBlocking.class);
+        this.categoryBlocking = taskClass.isAnnotationPresent(CategoryBlocking.class);
+        this.classBlocking = taskClass.isAnnotationPresent(ClassBlocking.class);
+        if(taskClass.isAnnotationPresent(MaxConcurrent.class)) {
+            MaxConcurrent maxConcurrent = taskClass.getAnnotation(MaxConcurrent.class);
+            if(maxConcurrent.value() < 1) {
+                throw new IllegalArgumentException("The @MaxConcurrent value of " + taskClass.getName() + " must be at least 1, not " + maxConcurrent.value() + ".");
+            }
+            this.maxConcurrent = maxConcurrent.value();
+            this.maxConcurrentScope = maxConcurrent.scope();
+        } else {
+            this.maxConcurrent = 0;
+            this.maxConcurrentScope = null;
+        }
+        this.category = (taskClass.isAnnotationPresent(Category.class) ? taskClass.getAnnotation(Category.class).value() : "");
+        this.priority = (taskClass.isAnnotationPresent(Priority.class) ? taskClass.getAnnotation(Priority.class).value() : 0);
+        if(taskClass.isAnnotationPresent(Timeout.class)) {
+            Timeout timeout = taskClass.getAnnotation(Timeout.class);
+            this.timeout = timeout.unit().toNanos(timeout.value());
+        } else {
+            this.timeout = 0;
+        }
+    }
+
+    /**
+     * Gets the descriptor of a task class.
+     *
+     * @param clazz The task class.
+     * @return The descriptor of the task class.
+     * @throws IllegalArgumentException if the @MaxConcurrent value of the class is less than 1.
+     */
+    public static PeonTaskDescriptor forClass(Class<? extends PeonTask> clazz) {
+        return descriptors.get(clazz);
+    }
+
+    /**
+     * Gets the descriptor of the class of a task.
+     *
+     * @param peonTask The task.
+     * @return The descriptor of the class of the task.
+     * @throws IllegalArgumentException if the @MaxConcurrent value of the class of the task is less than 1.
+     */
+    public static PeonTaskDescriptor forTask(PeonTask peonTask) {
+        return descriptors.get(peonTask.getClass());
+    }
+
+    /**
+     * Gets the described task class.
+     *
+     * @return The described task class.
+     */
+    public Class<?> getTaskClass() {
+        return taskClass;
+    }
+
+    /**
+     * Checks if the task class is annotated with @ApplicationBlocking.
+     *
+     * @return True if the task class is annotated with @ApplicationBlocking.
+     */
+    public boolean isApplicationBlocking() {
+        return applicationBlocking;
+    }
+
+    /**
+     * Checks if the task class is annotated with @CategoryBlocking.
+     *
+     * @return True if the task class is annotated with @CategoryBlocking.
+     */
+    public boolean isCategoryBlocking() {
+        return categoryBlocking;
+    }
+
+    /**
+     * Checks if the task class is annotated with @ClassBlocking.
+     *
+     * @return True if the task class is annotated with @ClassBlocking.
+     */
+    public boolean isClassBlocking() {
+        return classBlocking;
+    }
+
+    /**
+     * Gets the largest number of tasks of the class or category that may run at the same time as a task of the class.
+     *
+     * @return The value of the @MaxConcurrent annotation of the task class or 0 if it has none.
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Gets the tasks that count towards the limit of the task class.
+     *
+     * @return The scope of the @MaxConcurrent annotation of the task class or null if it has none.
+     */
+    public MaxConcurrent.Scope getMaxConcurrentScope() {
+        return maxConcurrentScope;
+    }
+
+    /**
+     * Gets the category of the task class.
+     *
+     * @return The value of the @Category annotation of the task class or an empty string if it has none.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Gets the priority of the task class.
+     *
+     * @return The value of the @Priority annotation of the task class or 0 if it has none.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Gets the timeout of the task class.
+     *
+     * @return The value of the @Timeout annotation of the task class in nanoseconds or 0 if it has none.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.peon;
+
+/**
+ * Exception that completes the future of a submitted task exceptionally when the task fails, that is when it ends
+ * in the state PeonTaskState.FAILED. The error reported by the task is available through getError().
+ */
+public class PeonTaskFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = -2934409734251170832L;
+    /**
+     * The task that failed.
+     */
+    private PeonTask failedTask;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param failedTask The task that failed.
+     */
+    public PeonTaskFailedException(PeonTask failedTask) {
+        super("The task " + failedTask.getClass().getName() + " failed"
+              + (failedTask.getError() != null ? ": " + failedTask.getError().getMessage() : "."));
+        setFailedTask(failedTask);
+    }
+
+    /**
+     * Gets the task that failed.
+     *
+     * @return The task that failed.
+     */
+    public PeonTask getFailedTask() {
+        return failedTask;
+    }
+    /**
+     * Sets the task that failed.
+     *
+     * @param failedTask The task that failed.
+     */
+    public void setFailedTask(PeonTask failedTask) {
+        this.failedTask = failedTask;
+    }
+
+    /**
+     * Gets the error reported by the task that failed.
+     *
+     * @return The error reported by the task or null if it did not report one.
+     */
+    public PeonError getError() {
+        return failedTask.getError();
+    }
+
+}
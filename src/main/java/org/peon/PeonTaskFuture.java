@@ -0,0 +1,55 @@
+package org.peon;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The future of a submitted task. Cancelling the future cancels the task.
+ *
+ * @param <T> The type of the result of the task.
+ */
+class PeonTaskFuture<T> extends CompletableFuture<T> {
+
+    /**
+     * The submitted task.
+     */
+    private final PeonTask<T> peonTask;
+
+    public PeonTaskFuture(PeonTask<T> peonTask) {
+        this.peonTask = peonTask;
+    }
+
+    /**
+     * Completes the future with the outcome of the task, which must be done.
+     */
+    public void completeFromTask() {
+        PeonTaskState state = peonTask.getState();
+        if(state == PeonTaskState.FINISHED) {
+            complete(peonTask.getResult());
+        } else if(state == PeonTaskState.FAILED) {
+            completeExceptionally(new PeonTaskFailedException(peonTask));
+        } else if(state == PeonTaskState.EXCEPTION) {
+            completeExceptionally(peonTask.getException());
+        } else if(state == PeonTaskState.TIMED_OUT) {
+            completeExceptionally(new TimeoutException("The task " + peonTask.getClass().getName() + " timed out."));
+        } else {
+            super.cancel(false);
+        }
+    }
+
+    /**
+     * Cancels the task and completes the future with a CancellationException.
+     *
+     * @param mayInterruptIfRunning Ignored, the peon decides how the worker thread of a cancelled task is released.
+     * @return True if the future was cancelled by this call.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if(cancelled) {
+            peonTask.cancel();
+        }
+        return cancelled;
+    }
+
+}
@@ -0,0 +1,274 @@
+package org.peon;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A graph of tasks where each task may declare prerequisite tasks that must finish before it is executed.
+ * Tasks that do not depend on each other are executed in parallel. A task is only executed after all of its
+ * prerequisites have reached PeonTaskState.FINISHED. If a prerequisite ends in any other state, the tasks that
+ * depend on it, directly or indirectly, are skipped: they are cancelled without ever being executed.
+ *
+ * Prerequisites must be added to the graph before the tasks that depend on them, which makes cycles impossible.
+ * Tasks that implement DependentPeonTask are handed each of their prerequisites before they are executed, so that
+ * results can flow from a task to the tasks that depend on it.
+ *
+ * A graph is executed by calling execute(PeonTaskGraph) in an AbstractPeonMaster and can only be executed once.
+ */
+public class PeonTaskGraph {
+
+    /**
+     * The nodes of the graph in the order their tasks were added.
+     */
+    private final Map<PeonTask, Node> nodes = new LinkedHashMap<PeonTask, Node>();
+    /**
+     * True once the graph has been executed.
+     */
+    private boolean started = false;
+
+    /**
+     * Adds a task to the graph.
+     *
+     * @param peonTask The task that will be added.
+     * @param prerequisites The tasks that must finish before the task is executed. They must already be in the graph.
+     * @return This graph, so that calls can be chained.
+     * @throws IllegalArgumentException if the task is already in the graph or a prerequisite is not.
+     * @throws IllegalStateException if the graph has already been executed.
+     */
+    public synchronized PeonTaskGraph add(PeonTask peonTask, PeonTask... prerequisites) {
+        if(started) {
+            throw new IllegalStateException("The graph has already been executed.");
+        }
+        if(nodes.containsKey(peonTask)) {
+            throw new IllegalArgumentException("Task " + peonTask.getName() + " is already in the graph.");
+        }
+        Node node = new Node(peonTask);
+        for(PeonTask prerequisite : prerequisites) {
+            Node prerequisiteNode = nodes.get(prerequisite);
+            if(prerequisiteNode == null) {
+                throw new IllegalArgumentException("Prerequisite " + prerequisite.getName() + " must be added to the graph before " + peonTask.getName() + ".");
+            }
+            if(node.prerequisites.add(prerequisiteNode)) {
+                prerequisiteNode.dependents.add(node);
+            }
+        }
+        node.remainingPrerequisites = node.prerequisites.size();
+        nodes.put(peonTask, node);
+        return this;
+    }
+
+    /**
+     * Returns the tasks in the graph in the order they were added.
+     *
+     * @return A set of the tasks in the graph.
+     */
+    public synchronized Set<PeonTask> getTasks() {
+        return Collections.unmodifiableSet(new LinkedHashSet<PeonTask>(nodes.keySet()));
+    }
+
+    /**
+     * Returns the prerequisites of a task in the graph.
+     *
+     * @param peonTask A task in the graph.
+     * @return A set of the tasks that must finish before the task is executed.
+     */
+    public synchronized Set<PeonTask> getPrerequisites(PeonTask peonTask) {
+        return tasksOf(node(peonTask).prerequisites);
+    }
+
+    /**
+     * Returns the tasks in the graph that directly depend on a task.
+     *
+     * @param peonTask A task in the graph.
+     * @return A set of the tasks that have the task as a prerequisite.
+     */
+    public synchronized Set<PeonTask> getDependents(PeonTask peonTask) {
+        return tasksOf(node(peonTask).dependents);
+    }
+
+    /**
+     * Returns the tasks that were skipped because a task they depend on did not finish.
+     *
+     * @return A set of the skipped tasks.
+     */
+    public synchronized Set<PeonTask> getSkippedTasks() {
+        Set<PeonTask> skippedTasks = new LinkedHashSet<PeonTask>();
+        for(Node node : nodes.values()) {
+            if(node.state == NodeState.SKIPPED) {
+                skippedTasks.add(node.peonTask);
+            }
+        }
+        return Collections.unmodifiableSet(skippedTasks);
+    }
+
+    /**
+     * Checks if every task in the graph is either done or skipped.
+     *
+     * @return True if the execution of the graph is complete.
+     */
+    public synchronized boolean isDone() {
+        if(!started) {
+            return false;
+        }
+        for(Node node : nodes.values()) {
+            if(node.state != NodeState.DONE && node.state != NodeState.SKIPPED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the graph as executed and returns the tasks without prerequisites, which can be executed at once.
+     *
+     * @return A list of the tasks that can be executed at once.
+     * @throws IllegalStateException if the graph has already been executed.
+     */
+    synchronized List<PeonTask> start() {
+        if(started) {
+            throw new IllegalStateException("The graph has already been executed.");
+        }
+        started = true;
+        List<PeonTask> ready = new ArrayList<PeonTask>();
+        for(Node node : nodes.values()) {
+            if(node.remainingPrerequisites == 0) {
+                node.state = NodeState.EXECUTED;
+                ready.add(node.peonTask);
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Records that a task in the graph is done and works out which tasks can now be executed and which must be skipped.
+     *
+     * @param peonTask The task that is done.
+     * @param ready Receives the dependents whose prerequisites have all finished.
+     * @param skipped Receives the tasks that will never be executed because the task did not finish.
+     */
+    synchronized void taskDone(PeonTask peonTask, List<PeonTask> ready, List<PeonTask> skipped) {
+        Node node = node(peonTask);
+        if(node.state == NodeState.DONE || node.state == NodeState.SKIPPED) {
+            return;
+        }
+        node.state = NodeState.DONE;
+        if(peonTask.getState() == PeonTaskState.FINISHED) {
+            for(Node dependent : node.dependents) {
+                if(--dependent.remainingPrerequisites == 0 && dependent.state == NodeState.PENDING) {
+                    dependent.state = NodeState.EXECUTED;
+                    ready.add(dependent.peonTask);
+                }
+            }
+        } else {
+            skipDependents(node, skipped);
+        }
+    }
+
+    /**
+     * Records that a task in the graph could not be executed and skips it along with the tasks that depend on it.
+     *
+     * @param peonTask The task that could not be executed.
+     * @param skipped Receives the skipped tasks, except the task itself.
+     */
+    synchronized void taskRejected(PeonTask peonTask, List<PeonTask> skipped) {
+        Node node = node(peonTask);
+        node.state = NodeState.SKIPPED;
+        skipDependents(node, skipped);
+    }
+
+    /**
+     * Skips every pending task that depends on a node, directly or indirectly.
+     *
+     * @param node The node whose dependents will be skipped.
+     * @param skipped Receives the skipped tasks.
+     */
+    private void skipDependents(Node node, List<PeonTask> skipped) {
+        Deque<Node> stack = new ArrayDeque<Node>(node.dependents);
+        while(!stack.isEmpty()) {
+            Node dependent = stack.pop();
+            if(dependent.state == NodeState.PENDING) {
+                dependent.state = NodeState.SKIPPED;
+                skipped.add(dependent.peonTask);
+                stack.addAll(dependent.dependents);
+            }
+        }
+    }
+
+    private Node node(PeonTask peonTask) {
+        Node node = nodes.get(peonTask);
+        if(node == null) {
+            throw new IllegalArgumentException("Task " + peonTask.getName() + " is not in the graph.");
+        }
+        return node;
+    }
+
+    private static Set<PeonTask> tasksOf(Set<Node> nodes) {
+        Set<PeonTask> tasks = new LinkedHashSet<PeonTask>();
+        for(Node node : nodes) {
+            tasks.add(node.peonTask);
+        }
+        return Collections.unmodifiableSet(tasks);
+    }
+
+    /**
+     * The progress of a task through the execution of the graph.
+     */
+    private enum NodeState {
+        /**
+         * The task is waiting for its prerequisites.
+         */
+        PENDING,
+        /**
+         * The task has been handed to the peon master.
+         */
+        EXECUTED,
+        /**
+         * The task is done.
+         */
+        DONE,
+        /**
+         * The task will never be executed because a task it depends on did not finish.
+         */
+        SKIPPED;
+    }
+
+    /**
+     * A task in the graph and its edges.
+     */
+    private static class Node {
+
+        /**
+         * The task.
+         */
+        private final PeonTask peonTask;
+        /**
+         * The nodes of the tasks that must finish before this task is executed.
+         */
+        private final Set<Node> prerequisites = new LinkedHashSet<Node>();
+        /**
+         * The nodes of the tasks that have this task as a prerequisite.
+         */
+        private final Set<Node> dependents = new LinkedHashSet<Node>();
+        /**
+         * The number of prerequisites that have not finished yet.
+         */
+        private int remainingPrerequisites;
+        /**
+         * The progress of the task through the execution of the graph.
+         */
+        private NodeState state = NodeState.PENDING;
+
+        public Node(PeonTask peonTask) {
+            this.peonTask = peonTask;
+        }
+
+    }
+
+}
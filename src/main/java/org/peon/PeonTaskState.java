@@ -30,6 +30,10 @@ public enum PeonTaskState {
      * The task finished successfully. If the task produces a result, the result should be available from
      * a task in this state.
      */
-    FINISHED;
+    FINISHED,
+    /**
+     * The task did not finish within the time it was allowed to take and has been stopped by the peon master.
+     */
+    TIMED_OUT;
 
 }
@@ -0,0 +1,158 @@
+package org.peon;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The times a task spent in each phase of its life, measured with System.nanoTime() so that they are not affected
+ * by changes to the wall clock. The phases are:
+ *
+ * queued - from the task being handed to the peon master until the worker thread starts executing it, including
+ * the time spent waiting for blocking tasks and for a free worker thread.
+ * running - from the worker thread starting the task until the work of the task is over.
+ * delivery - from the work of the task being over until the peon master dispatches the DONE event for the task,
+ * which for a SwingPeon includes the hop to the GUI event thread.
+ *
+ * The timings are stamped by the task and by the peon master as the task moves through the phases and may be read
+ * from any thread at any time. A phase that has not been entered has no duration yet.
+ */
+public final class PeonTaskTimings {
+
+    /**
+     * Marks a phase boundary that has not been reached. System.nanoTime() may return any value, including
+     * negative ones, so -1 can not be used.
+     */
+    private static final long UNSET = Long.MIN_VALUE;
+
+    /**
+     * The System.nanoTime() the task was handed to the peon master.
+     */
+    private volatile long submittedAt = UNSET;
+    /**
+     * The System.nanoTime() the worker thread started executing the task.
+     */
+    private volatile long startedAt = UNSET;
+    /**
+     * The System.nanoTime() the work of the task was over.
+     */
+    private volatile long endedAt = UNSET;
+    /**
+     * The System.nanoTime() the peon master dispatched the DONE event for the task.
+     */
+    private volatile long doneAt = UNSET;
+
+    /**
+     * Records that the task was handed to the peon master.
+     */
+    void submitted() {
+        this.submittedAt = System.nanoTime();
+    }
+
+    /**
+     * Records that the worker thread started executing the task.
+     */
+    void started() {
+        this.startedAt = System.nanoTime();
+    }
+
+    /**
+     * Records that the work of the task is over.
+     */
+    void ended() {
+        this.endedAt = System.nanoTime();
+    }
+
+    /**
+     * Records that the peon master is dispatching the DONE event for the task.
+     */
+    void done() {
+        this.doneAt = System.nanoTime();
+    }
+
+    /**
+     * Checks if the worker thread has started executing the task.
+     *
+     * @return True if the task has started executing.
+     */
+    public boolean isStarted() {
+        return startedAt != UNSET;
+    }
+
+    /**
+     * Checks if the work of the task is over.
+     *
+     * @return True if the task has stopped executing.
+     */
+    public boolean isEnded() {
+        return endedAt != UNSET;
+    }
+
+    /**
+     * The time from the task being handed to the peon master until the worker thread started executing it. While
+     * the task is still queued this is the time it has been queued so far. A task that was done without ever being
+     * started was queued until it was done.
+     *
+     * @param unit The unit of the returned time.
+     * @return The time the task was queued or -1 if it was not handed to a peon master.
+     */
+    public long getQueuedTime(TimeUnit unit) {
+        long startedAt = this.startedAt;
+        return between(submittedAt, (startedAt != UNSET ? startedAt : doneAt), unit);
+    }
+
+    /**
+     * The time from the worker thread starting the task until the work of the task was over. While the task is still
+     * executing this is the time it has been executing so far.
+     *
+     * @param unit The unit of the returned time.
+     * @return The time the task was executing or -1 if it has not started.
+     */
+    public long getRunningTime(TimeUnit unit) {
+        return between(startedAt, endedAt, unit);
+    }
+
+    /**
+     * The time from the work of the task being over until the peon master dispatched the DONE event for the task.
+     * While the event is still on its way this is the time it has been on its way so far.
+     *
+     * @param unit The unit of the returned time.
+     * @return The time it took to deliver the DONE event or -1 if the task has not stopped executing.
+     */
+    public long getDeliveryTime(TimeUnit unit) {
+        return between(endedAt, doneAt, unit);
+    }
+
+    /**
+     * The time from the task being handed to the peon master until the peon master dispatched the DONE event for
+     * the task, or until now if it has not been dispatched yet.
+     *
+     * @param unit The unit of the returned time.
+     * @return The total time of the task or -1 if it was not handed to a peon master.
+     */
+    public long getTotalTime(TimeUnit unit) {
+        return between(submittedAt, doneAt, unit);
+    }
+
+    /**
+     * The time between two phase boundaries.
+     *
+     * @param from The start of the phase.
+     * @param to The end of the phase or UNSET if the phase is still going on.
+     * @param unit The unit of the returned time.
+     * @return The time between the boundaries, or until now if the end has not been reached, or -1 if the start has
+     *         not been reached.
+     */
+    private static long between(long from, long to, TimeUnit unit) {
+        if(from == UNSET) {
+            return -1;
+        }
+        // A task that fails or is cancelled while it is executing is done before its work is over.
+        return unit.convert(Math.max(0, (to == UNSET ? System.nanoTime() : to) - from), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "PeonTaskTimings[queued=" + getQueuedTime(TimeUnit.MICROSECONDS) + "us, running=" + getRunningTime(TimeUnit.MICROSECONDS)
+                + "us, delivery=" + getDeliveryTime(TimeUnit.MICROSECONDS) + "us]";
+    }
+
+}
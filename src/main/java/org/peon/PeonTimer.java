@@ -0,0 +1,62 @@
+package org.peon;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timer that times out tasks for all peon masters. A single daemon thread sleeps until the earliest timeout
+ * is due, so tasks with timeouts cost one scheduled entry each and no thread of their own. Timeouts of tasks that
+ * are done in time are removed from the timer at once.
+ */
+final class PeonTimer {
+
+    /**
+     * The executor that runs the timeouts, created the first time a timeout is scheduled.
+     */
+    private static volatile ScheduledExecutorService scheduler;
+
+    private PeonTimer() {
+    }
+
+    /**
+     * Schedules a task to be timed out after the given delay.
+     *
+     * @param peonTask The task that will be timed out.
+     * @param timeout The delay in nanoseconds.
+     * @return A future that can be cancelled if the task is done in time.
+     */
+    public static ScheduledFuture<?> schedule(final PeonTask peonTask, long timeout) {
+        return scheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                peonTask.timeOut();
+            }
+        }, timeout, TimeUnit.NANOSECONDS);
+    }
+
+    private static ScheduledExecutorService scheduler() {
+        ScheduledExecutorService scheduler = PeonTimer.scheduler;
+        if(scheduler == null) {
+            synchronized(PeonTimer.class) {
+                scheduler = PeonTimer.scheduler;
+                if(scheduler == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "peon-timer");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    executor.setRemoveOnCancelPolicy(true);
+                    PeonTimer.scheduler = scheduler = executor;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+}
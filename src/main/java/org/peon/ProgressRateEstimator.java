@@ -0,0 +1,77 @@
+package org.peon;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the rate at which a task performs its operations as an exponentially weighted moving average, so that
+ * the estimated time remaining follows changes in speed without swinging wildly from one moment to the next.
+ *
+ * The estimator does no work while the task progresses. It samples the progress of the task when an estimate is
+ * asked for, at most once per sample interval, and weighs each sample by the time it covers so that the estimate
+ * is the same no matter how often it is asked for. Recent samples count the most: speed that is older than a few
+ * time constants hardly counts at all.
+ */
+final class ProgressRateEstimator {
+
+    /**
+     * The shortest time in nanoseconds between two samples. Estimates asked for more often reuse the last rate.
+     */
+    static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250);
+    /**
+     * The time in nanoseconds it takes for a change in speed to make up about two thirds of the estimated rate.
+     */
+    static final double TIME_CONSTANT = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * The System.nanoTime() of the last sample.
+     */
+    private long sampledAt;
+    /**
+     * The progress of the task at the last sample.
+     */
+    private long sampledProgress;
+    /**
+     * The estimated number of operations per nanosecond or -1 if no sample has been taken.
+     */
+    private double rate = -1;
+
+    /**
+     * Restarts the estimation when the task starts executing.
+     *
+     * @param now The System.nanoTime() the task started executing.
+     * @param progress The progress of the task when it started executing.
+     */
+    synchronized void start(long now, long progress) {
+        this.sampledAt = now;
+        this.sampledProgress = progress;
+        this.rate = -1;
+    }
+
+    /**
+     * Gets the estimated rate of the task, taking a new sample if the sample interval has passed since the last one.
+     * Until the first sample interval has passed the rate is the average rate since the task started.
+     *
+     * @param now The current System.nanoTime().
+     * @param progress The current progress of the task.
+     * @return The estimated number of operations per nanosecond or 0 if the task has not progressed.
+     */
+    synchronized double getRate(long now, long progress) {
+        long elapsed = now - sampledAt;
+        if(elapsed < SAMPLE_INTERVAL) {
+            if(rate >= 0) {
+                return rate;
+            }
+            return (elapsed > 0 ? Math.max(0, progress - sampledProgress) / (double) elapsed : 0);
+        }
+        double sampledRate = Math.max(0, progress - sampledProgress) / (double) elapsed;
+        if(rate < 0) {
+            rate = sampledRate;
+        } else {
+            rate += (1 - Math.exp(-elapsed / TIME_CONSTANT)) * (sampledRate - rate);
+        }
+        sampledAt = now;
+        sampledProgress = progress;
+        return rate;
+    }
+
+}
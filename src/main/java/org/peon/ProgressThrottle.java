@@ -0,0 +1,67 @@
+package org.peon;
+
+import java.beans.PropertyChangeEvent;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Limits the rate at which progress events from a task are relayed to the GUI event thread. Progress events that
+ * arrive faster than the limit are held back, but the latest held back event is kept so that it can be relayed
+ * before the task changes state and the final progress of the task is never lost.
+ *
+ * Peons use a progress throttle when the peon master is configured with a maximum progress event rate. The
+ * throttle may be used from several worker threads at the same time.
+ */
+public class ProgressThrottle {
+
+    /**
+     * The minimum time in nanoseconds between two relayed progress events.
+     */
+    private final long interval;
+    /**
+     * The System.nanoTime() from which the next progress event may be relayed.
+     */
+    private final AtomicLong nextPermitted = new AtomicLong(Long.MIN_VALUE);
+    /**
+     * The latest progress event that was held back or null if none has been held back since the last relayed event.
+     */
+    private final AtomicReference<PropertyChangeEvent> heldBack = new AtomicReference<PropertyChangeEvent>();
+
+    /**
+     * Creates a new progress throttle.
+     *
+     * @param maxEventsPerSecond The maximum number of progress events that will be relayed per second.
+     */
+    public ProgressThrottle(int maxEventsPerSecond) {
+        this.interval = TimeUnit.SECONDS.toNanos(1) / maxEventsPerSecond;
+    }
+
+    /**
+     * Checks if a progress event may be relayed now. If it may not, it is held back instead.
+     *
+     * @param e The progress event.
+     * @return True if the event may be relayed now, false if it has been held back.
+     */
+    public boolean permit(PropertyChangeEvent e) {
+        long now = System.nanoTime();
+        long next = nextPermitted.get();
+        if((next == Long.MIN_VALUE || now - next >= 0) && nextPermitted.compareAndSet(next, now + interval)) {
+            heldBack.set(null);
+            return true;
+        }
+        heldBack.set(e);
+        return false;
+    }
+
+    /**
+     * Takes the latest held back progress event. Peons should call this method when the task changes state and relay
+     * the returned event, if any, before the state change.
+     *
+     * @return The latest held back progress event or null if no event has been held back.
+     */
+    public PropertyChangeEvent takeHeldBack() {
+        return heldBack.getAndSet(null);
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.peon;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapses a chunk of property change events fired by a task into as few events as possible before they are
+ * relayed to the GUI event thread. Consecutive changes of the same property are collapsed into a single event
+ * from the first old value to the last new value. Changes of the state property are never collapsed or reordered,
+ * and all changes that were fired before a state change are relayed before it, so listeners always see the latest
+ * progress, status and result of a task before they see that it has finished.
+ */
+public final class PropertyChangeCoalescer {
+
+    private PropertyChangeCoalescer() {}
+
+    /**
+     * Collapses a chunk of property change events.
+     *
+     * @param events The events in the order they were fired.
+     * @return The collapsed events in the order they should be relayed.
+     */
+    public static List<PropertyChangeEvent> coalesce(List<PropertyChangeEvent> events) {
+        if(events.size() < 2) {
+            return events;
+        }
+        List<PropertyChangeEvent> coalesced = new ArrayList<PropertyChangeEvent>();
+        Map<String, PropertyChangeEvent> latest = new LinkedHashMap<String, PropertyChangeEvent>();
+        for(PropertyChangeEvent event : events) {
+            if("state".equals(event.getPropertyName())) {
+                flush(latest, coalesced);
+                coalesced.add(event);
+            } else {
+                PropertyChangeEvent previous = latest.get(event.getPropertyName());
+                if(previous != null) {
+                    event = new PropertyChangeEvent(event.getSource(), event.getPropertyName(), previous.getOldValue(), event.getNewValue());
+                }
+                latest.put(event.getPropertyName(), event);
+            }
+        }
+        flush(latest, coalesced);
+        return coalesced;
+    }
+
+    private static void flush(Map<String, PropertyChangeEvent> latest, List<PropertyChangeEvent> coalesced) {
+        for(Iterator<PropertyChangeEvent> iterator = latest.values().iterator(); iterator.hasNext();) {
+            coalesced.add(iterator.next());
+            iterator.remove();
+        }
+    }
+
+}
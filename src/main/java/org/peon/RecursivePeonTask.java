@@ -0,0 +1,211 @@
+package org.peon;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A task that splits its work into subtasks that are run in parallel by a fork/join pool with work stealing.
+ * The peon master still sees the task as a single task that is executed by one peon, but the worker thread of
+ * the peon only waits for the subtasks while the threads of the fork/join pool do the work. The worker thread never
+ * computes subtasks itself.
+ *
+ * Subclasses implement createRootSubtask() to return the subtask that covers all of the work. Subtasks extend
+ * the inner class Subtask, split their work by forking new subtasks in doCompute() and report the operations they
+ * perform by calling progress(long), which adds to the progress of this task. Set the total number of operations
+ * of this task before it is executed to get meaningful progress.
+ *
+ * Cancelling or timing out the task interrupts the waiting worker thread, which is released at once, and cancels the
+ * root subtask. Cancellation of the subtasks themselves is cooperative: subtasks that have not started computing are
+ * not computed at all, but subtasks that are already computing keep running in the fork/join pool until they return
+ * or fork and join new subtasks. Long running subtasks should check isTaskCancelled() now and then.
+ *
+ * @param <T> The type of the result that will be provided by the task.
+ */
+public abstract class RecursivePeonTask<T extends Object> extends AbstractPeonTask<T> {
+
+	/**
+	 * The pool that runs the subtasks.
+	 */
+	private final ForkJoinPool pool;
+	/**
+	 * The subtask that covers all of the work while the task is executing.
+	 */
+	private volatile ForkJoinTask<T> rootSubtask;
+
+	/**
+	 * Creates a task whose subtasks are run by the common fork/join pool.
+	 */
+	protected RecursivePeonTask() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a task whose subtasks are run by the given fork/join pool.
+	 *
+	 * @param pool The pool that will run the subtasks.
+	 */
+	protected RecursivePeonTask(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Gets the pool that runs the subtasks.
+	 *
+	 * @return The pool that runs the subtasks.
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Implement this method to provide the subtask that covers all of the work the task is supposed to do.
+	 *
+	 * @return The subtask whose result will be the result of the task.
+	 */
+	protected abstract Subtask<T> createRootSubtask();
+
+	/**
+	 * Runs the root subtask in the fork/join pool and waits for it to complete. The result of the root subtask
+	 * becomes the result of the task unless the task is cancelled. The root subtask is run by a thread of the pool
+	 * while the worker thread waits interruptibly, since a thread that joins a fork/join task may end up computing it.
+	 */
+	@Override
+	public void doExecute() {
+		final Subtask<T> rootSubtask = createRootSubtask();
+		this.rootSubtask = rootSubtask;
+		if (getState() != PeonTaskState.ACTIVE) {
+			// The task was cancelled before the root subtask was published.
+			return;
+		}
+		final CompletableFuture<T> outcome = new CompletableFuture<T>();
+		pool.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					outcome.complete(rootSubtask.invoke());
+				} catch (Throwable t) {
+					outcome.completeExceptionally(t);
+				}
+			}
+		});
+		try {
+			T result = outcome.get();
+			if (getState() == PeonTaskState.ACTIVE) {
+				setResult(result);
+			}
+		} catch (InterruptedException e) {
+			// The worker thread is interrupted when the task is cancelled or timed out.
+			rootSubtask.cancel(false);
+			if (!isCancelled()) {
+				throw new CancellationException("The worker thread was interrupted.");
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				// Includes the CancellationException of a root subtask that was cancelled along with the task.
+				throw (RuntimeException)cause;
+			} else if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			this.rootSubtask = null;
+		}
+	}
+
+	/**
+	 * Cancels the task, which interrupts the waiting worker thread, and cancels its root subtask so that subtasks that
+	 * have not started computing are not computed.
+	 */
+	@Override
+	public synchronized void cancel() {
+		super.cancel();
+		cancelRootSubtask();
+	}
+
+	/**
+	 * Times out the task, which interrupts the waiting worker thread, and cancels its root subtask so that subtasks
+	 * that have not started computing are not computed.
+	 */
+	@Override
+	public synchronized void timeOut() {
+		super.timeOut();
+		cancelRootSubtask();
+	}
+
+	/**
+	 * Cancels the root subtask if the task is executing and has been cancelled or timed out.
+	 */
+	private void cancelRootSubtask() {
+		ForkJoinTask<T> rootSubtask = this.rootSubtask;
+		if (rootSubtask != null && isCancelled()) {
+			rootSubtask.cancel(false);
+		}
+	}
+
+	/**
+	 * Checks if the task has been cancelled. Long running subtasks should call this now and then and stop if it
+	 * returns true.
+	 *
+	 * @return True if the task has been cancelled.
+	 */
+	protected boolean isTaskCancelled() {
+		return isCancelled();
+	}
+
+	/**
+	 * A part of the work of the task that is run in the fork/join pool and may fork further subtasks.
+	 *
+	 * @param <R> The type of the result of the subtask.
+	 */
+	protected abstract class Subtask<R> extends RecursiveTask<R> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Computes the subtask unless the task has been cancelled or timed out.
+		 *
+		 * @return The result of the subtask.
+		 * @throws CancellationException if the task has been cancelled.
+		 */
+		@Override
+		protected final R compute() {
+			if (isTaskCancelled()) {
+				throw new CancellationException();
+			}
+			return doCompute();
+		}
+
+		/**
+		 * Implement this method to do the work of the subtask, either directly or by forking and joining new subtasks.
+		 *
+		 * @return The result of the subtask.
+		 */
+		protected abstract R doCompute();
+
+		/**
+		 * Adds a number of performed operations to the progress of the task. This method is threadsafe and may be
+		 * called by any number of subtasks at the same time.
+		 *
+		 * @param operations The number of operations that have been performed.
+		 */
+		protected void progress(long operations) {
+			RecursivePeonTask.this.progress(operations);
+		}
+
+		/**
+		 * Checks if the task has been cancelled.
+		 *
+		 * @return True if the task has been cancelled.
+		 */
+		protected boolean isTaskCancelled() {
+			return RecursivePeonTask.this.isTaskCancelled();
+		}
+
+	}
+
+}
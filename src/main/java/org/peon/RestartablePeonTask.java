@@ -0,0 +1,20 @@
+package org.peon;
+
+/**
+ * A task that can be created again from a short piece of data, so that a PeonTaskJournal can execute it again
+ * after the application was stopped before the task was done. Restartable tasks should be safe to run again from
+ * the start, since a task that was running when the application stopped will run a second time.
+ *
+ * @param <T> The type of the result of the task.
+ */
+public interface RestartablePeonTask<T> extends PeonTask<T> {
+
+    /**
+     * The data a PeonTaskRestorer needs to create the task again, for example the parameters of the task. The data
+     * is read once, when the task is executed.
+     *
+     * @return The data that describes the task, never null.
+     */
+    public String getRestartData();
+
+}
@@ -0,0 +1,88 @@
+package org.peon;
+
+import java.util.PriorityQueue;
+
+/**
+ * The queue of peons that wait for the peon master to let them start working, ordered by priority with aging.
+ * Each peon is given a virtual start time that is its enqueue time moved ahead by its priority times the aging
+ * interval, and peons are dispatched in order of their virtual start times. A peon with a higher priority is
+ * therefore dispatched before peons with a lower priority, until those have waited long enough to make up for
+ * the difference, so low priority peons are never starved.
+ *
+ * This class is not threadsafe.
+ */
+class RunQueue {
+
+    /**
+     * The queued peons ordered by virtual start time.
+     */
+    private final PriorityQueue<Entry> entries = new PriorityQueue<Entry>();
+    /**
+     * The sequence number of the next queued peon, used to keep peons with equal virtual start times in FIFO order.
+     */
+    private long sequence = 0;
+
+    /**
+     * Queues a peon.
+     *
+     * @param peon The peon that will be queued.
+     * @param priority The priority of the task of the peon.
+     * @param agingInterval The time in nanoseconds a peon must wait to make up for one priority level.
+     */
+    public void offer(Peon peon, int priority, long agingInterval) {
+        entries.offer(new Entry(peon, System.nanoTime() - priority * agingInterval, sequence++));
+    }
+
+    /**
+     * Takes the peon with the earliest virtual start time from the queue.
+     *
+     * @return The peon with the earliest virtual start time or null if the queue is empty.
+     */
+    public Peon poll() {
+        Entry entry = entries.poll();
+        return (entry != null ? entry.peon : null);
+    }
+
+    /**
+     * Gets the number of queued peons.
+     *
+     * @return The number of queued peons.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Checks if the queue is empty.
+     *
+     * @return True if no peons are queued.
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final Peon peon;
+        private final long virtualStartTime;
+        private final long sequence;
+
+        public Entry(Peon peon, long virtualStartTime, long sequence) {
+            this.peon = peon;
+            this.virtualStartTime = virtualStartTime;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            // Compare the difference rather than the values themselves since System.nanoTime() may overflow.
+            long difference = virtualStartTime - other.virtualStartTime;
+            if(difference != 0) {
+                return (difference < 0 ? -1 : 1);
+            }
+            return (sequence < other.sequence ? -1 : (sequence > other.sequence ? 1 : 0));
+        }
+
+    }
+
+}
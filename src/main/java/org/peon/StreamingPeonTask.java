@@ -0,0 +1,108 @@
+package org.peon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A task that streams its results as chunks while it is executing instead of holding them all until it finishes,
+ * much like SwingWorker.publish() and process(). The task calls publish(C) for each chunk and the peon master fires
+ * a PUBLISHED event on the GUI event thread when there are chunks to take. Listeners take the chunks that have been
+ * published so far with takeChunks(), so a PUBLISHED event may stand for any number of chunks.
+ *
+ * The chunks are held in a buffer with a fixed capacity. When the buffer is full, publish(C) blocks the worker thread
+ * until the chunks are taken, so a producer that is faster than its consumers is slowed down to their pace and the
+ * memory used by the chunks stays flat no matter how many are published. A streaming task must therefore have a
+ * consumer that takes its chunks, or it will stop at the first full buffer until it is cancelled or times out.
+ *
+ * Chunks published before the task finishes are announced before the FINISHED event. Chunks that have not been
+ * taken when the task is done stay in the buffer and may still be taken.
+ *
+ * @param <T> The type of the result that will be provided by the task, for example a summary of the streamed chunks.
+ * @param <C> The type of the chunks that will be published by the task.
+ */
+public abstract class StreamingPeonTask<T extends Object, C> extends AbstractPeonTask<T> {
+
+	/**
+	 * The chunks that have been published and not yet taken.
+	 */
+	private final BlockingQueue<C> buffer;
+	/**
+	 * True if the consumers have been told about chunks they have not taken yet, so that a burst of chunks fires a
+	 * single PUBLISHED event.
+	 */
+	private final AtomicBoolean announced = new AtomicBoolean();
+	/**
+	 * The number of chunks that have been published so far.
+	 */
+	private final AtomicLong publishedChunkCount = new AtomicLong();
+
+	/**
+	 * Creates a task that holds at most the given number of chunks that have not been taken.
+	 *
+	 * @param bufferCapacity The largest number of chunks that may wait to be taken.
+	 */
+	protected StreamingPeonTask(int bufferCapacity) {
+		this.buffer = new ArrayBlockingQueue<C>(bufferCapacity);
+	}
+
+	/**
+	 * Publishes a chunk of the results of the task to its consumers. This is a bound property named "published"
+	 * whose value is the number of chunks published so far. If the buffer is full, this method blocks until the
+	 * consumers have taken chunks from it.
+	 *
+	 * @param chunk The chunk that will be published.
+	 * @throws CancellationException if the task is cancelled or times out, even while waiting for room in the buffer.
+	 */
+	protected void publish(C chunk) {
+		checkCancelled();
+		try {
+			buffer.put(chunk);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			checkCancelled();
+			throw new CancellationException("Interrupted while waiting for the consumers of the task.");
+		}
+		long count = publishedChunkCount.incrementAndGet();
+		if (announced.compareAndSet(false, true)) {
+			firePropertyChange("published", Long.valueOf(count - 1), Long.valueOf(count));
+		}
+	}
+
+	/**
+	 * Takes all the chunks that have been published and not yet taken, which makes room in the buffer for the
+	 * task to publish more. Consumers should call this when a PUBLISHED event is fired for the task.
+	 *
+	 * @return The chunks in the order they were published, or an empty list if there are none.
+	 */
+	public List<C> takeChunks() {
+		// Chunks published after this point are announced again.
+		announced.set(false);
+		List<C> chunks = new ArrayList<C>(buffer.size());
+		buffer.drainTo(chunks);
+		return chunks;
+	}
+
+	/**
+	 * The number of chunks that have been published and not yet taken.
+	 *
+	 * @return The number of chunks in the buffer.
+	 */
+	public int getBufferedChunkCount() {
+		return buffer.size();
+	}
+
+	/**
+	 * The number of chunks that have been published so far, including the ones that have been taken.
+	 *
+	 * @return The number of chunks that have been published.
+	 */
+	public long getPublishedChunkCount() {
+		return publishedChunkCount.get();
+	}
+
+}
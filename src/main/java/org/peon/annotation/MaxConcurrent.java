@@ -0,0 +1,48 @@
+package org.peon.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits the number of tasks that may run at the same time in the peon master. A task with this annotation present
+ * will be blocked from running while the given number of tasks of the same class, or of the same @Category if the
+ * scope is Scope.CATEGORY, are currently running. Unlike the blocking annotations the limit only holds back tasks of
+ * the annotated class, but all running tasks of the class or category count towards it.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface MaxConcurrent {
+    /**
+     * The largest number of tasks of the class or category that may run at the same time, at least 1.
+     *
+     * @return The largest number of tasks that may run at the same time.
+     */
+    int value();
+
+    /**
+     * The tasks that count towards the limit.
+     *
+     * @return The tasks that count towards the limit.
+     */
+    Scope scope() default Scope.CLASS;
+
+    /**
+     * The tasks that count towards the limit of a @MaxConcurrent task.
+     */
+    public enum Scope {
+        /**
+         * The running tasks of the same class count towards the limit.
+         */
+        CLASS,
+        /**
+         * The running tasks of the same @Category count towards the limit.
+         */
+        CATEGORY
+    }
+}
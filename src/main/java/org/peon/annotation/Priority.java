@@ -0,0 +1,26 @@
+package org.peon.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates the priority of the task. When the peon master limits the number of tasks that work at the same time,
+ * tasks with a higher priority are started before tasks with a lower priority that have been waiting for about as
+ * long. Tasks without this annotation have priority 0.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface Priority {
+    /**
+     * The priority of the task. Higher values are more urgent and negative values are allowed.
+     *
+     * @return The priority of the task.
+     */
+    int value();
+}
@@ -0,0 +1,35 @@
+package org.peon.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indicates the longest time the task may take from the moment it starts running on a worker thread. A task that is
+ * still running when its time is up is timed out, which releases its worker thread and its place among the currently
+ * running tasks so that it no longer blocks other tasks. Time spent in the wait queue, the run queue and the queue of
+ * the executor does not count.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface Timeout {
+    /**
+     * The longest time the task may take.
+     *
+     * @return The longest time the task may take, in the given unit.
+     */
+    long value();
+
+    /**
+     * The unit of the value.
+     *
+     * @return The unit of the value.
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
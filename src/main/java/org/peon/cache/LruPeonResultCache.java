@@ -0,0 +1,249 @@
+package org.peon.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A result cache that holds at most a fixed number of results and evicts the least recently used result to make
+ * room for a new one. Results may also be given a time to live, after which they are evicted the next time they
+ * are looked up or when they are the least recently used results as a new result is cached. The cache counts its
+ * hits, misses and evictions.
+ *
+ * The cache is threadsafe. Lookups and updates are serialized, which is cheap compared to running a task.
+ */
+public class LruPeonResultCache implements PeonResultCache {
+
+    /**
+     * The cached results in order of use, least recently used first. Guarded by itself.
+     */
+    private final LinkedHashMap<Object, Entry> entries;
+    /**
+     * The largest number of results the cache holds.
+     */
+    private final int maxSize;
+    /**
+     * The time to live of a result in nanoseconds or 0 if results do not expire.
+     */
+    private final long timeToLive;
+    /**
+     * The number of lookups that found a result.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * The number of lookups that found no result.
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * The number of results that were evicted because the cache was full or they had expired.
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache whose results do not expire.
+     *
+     * @param maxSize The largest number of results the cache holds.
+     * @throws IllegalArgumentException if maxSize is less than 1.
+     */
+    public LruPeonResultCache(int maxSize) {
+        this(maxSize, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a cache whose results expire after the given time.
+     *
+     * @param maxSize The largest number of results the cache holds.
+     * @param timeToLive The time a result is served after it was cached or 0 if results do not expire.
+     * @param unit The unit of the time to live.
+     * @throws IllegalArgumentException if maxSize is less than 1 or timeToLive is negative.
+     */
+    public LruPeonResultCache(int maxSize, long timeToLive, TimeUnit unit) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size of the cache must be at least 1, not " + maxSize + ".");
+        }
+        if(timeToLive < 0) {
+            throw new IllegalArgumentException("The time to live of the results can not be negative.");
+        }
+        this.maxSize = maxSize;
+        this.timeToLive = unit.toNanos(timeToLive);
+        this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if(size() > LruPeonResultCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Object get(Object key) {
+        synchronized(entries) {
+            Entry entry = entries.get(key);
+            if(entry != null && timeToLive > 0 && entry.isExpired(nanoTime())) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+            if(entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.result;
+        }
+    }
+
+    @Override
+    public void put(Object key, Object result) {
+        long now = nanoTime();
+        synchronized(entries) {
+            if(timeToLive > 0) {
+                evictExpired(now);
+            }
+            entries.put(key, new Entry(result, now + timeToLive));
+        }
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        synchronized(entries) {
+            entries.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized(entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the current time in nanoseconds that the expiry of results is measured against. Returns
+     * System.nanoTime() unless overridden, for instance by a test that needs to control time.
+     *
+     * @return The current time in nanoseconds.
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Evicts the expired results among the least recently used results, oldest use first, and stops at the first
+     * result that has not expired. Called before a result is cached so that expired results do not take up room that
+     * live results could use, at a cost that does not grow with the size of the cache. Expired results that have
+     * been used more recently are evicted when they are looked up or become the least recently used.
+     *
+     * @param now The current nanoTime().
+     */
+    private void evictExpired(long now) {
+        for(Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext();) {
+            if(!iterator.next().isExpired(now)) {
+                return;
+            }
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Gets the number of results in the cache, including results that have expired but have not been evicted yet.
+     *
+     * @return The number of results in the cache.
+     */
+    public int size() {
+        synchronized(entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Gets the largest number of results the cache holds.
+     *
+     * @return The largest number of results the cache holds.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the time a result is served after it was cached.
+     *
+     * @param unit The unit of the returned time.
+     * @return The time to live of a result or 0 if results do not expire.
+     */
+    public long getTimeToLive(TimeUnit unit) {
+        return unit.convert(timeToLive, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of lookups that found a result.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that found no result.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the share of lookups that found a result.
+     *
+     * @return The hit rate between 0 and 1 or 0 if there have been no lookups.
+     */
+    public double getHitRate() {
+        long hits = this.hits.sum();
+        long lookups = hits + misses.sum();
+        return (lookups > 0 ? (double) hits / lookups : 0);
+    }
+
+    /**
+     * Gets the number of results that were evicted because the cache was full or they had expired.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * A cached result.
+     */
+    private static class Entry {
+
+        /**
+         * The result of the task.
+         */
+        private final Object result;
+        /**
+         * The nanoTime() the result expires, if results expire.
+         */
+        private final long expiresAt;
+
+        public Entry(Object result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+    }
+
+}
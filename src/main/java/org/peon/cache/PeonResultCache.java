@@ -0,0 +1,39 @@
+package org.peon.cache;
+
+/**
+ * Holds the results of finished tasks so that the peon master can serve repeat executions of CacheablePeonTasks
+ * without running them. Set a cache on the peon master with setResultCache() to start caching. The peon master
+ * combines the class and the cache key of a task into the key it uses with the cache, so tasks of different classes
+ * never share results. The cache is called from any thread, so implementations must be threadsafe.
+ */
+public interface PeonResultCache {
+
+    /**
+     * Gets the cached result for a key.
+     *
+     * @param key The key of the result.
+     * @return The cached result or null if there is none or it has expired.
+     */
+    public Object get(Object key);
+
+    /**
+     * Caches the result of a finished task.
+     *
+     * @param key The key of the result.
+     * @param result The result of the task, which is never null.
+     */
+    public void put(Object key, Object result);
+
+    /**
+     * Removes the cached result for a key, if any, for example when the data it was computed from has changed.
+     *
+     * @param key The key of the result.
+     */
+    public void invalidate(Object key);
+
+    /**
+     * Removes all cached results.
+     */
+    public void clear();
+
+}
@@ -0,0 +1,129 @@
+package org.peon.checkpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps each checkpoint in a file of its own in a directory. A checkpoint is written to a temporary file, forced to
+ * the disk and moved over the previous checkpoint, so a crash while saving leaves either checkpoint intact.
+ */
+public class FileCheckpointStore implements PeonCheckpointStore {
+
+    /**
+     * The first four bytes of a checkpoint file.
+     */
+    private static final int MAGIC = 0x5045434b;
+    /**
+     * The extension of the checkpoint files.
+     */
+    private static final String EXTENSION = ".checkpoint";
+
+    /**
+     * The directory of the checkpoint files.
+     */
+    private final File directory;
+
+    /**
+     * Creates a store that keeps its checkpoints in a directory, which is created if it does not exist.
+     *
+     * @param directory The directory of the checkpoint files.
+     * @throws IOException if the directory could not be created.
+     */
+    public FileCheckpointStore(File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the directory of the checkpoint files.
+     *
+     * @return The directory of the checkpoint files.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public PeonCheckpoint load(String key) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(getFile(key).toPath());
+        } catch(NoSuchFileException e) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if(in.readInt() != MAGIC) {
+            throw new IOException(getFile(key) + " is not a peon checkpoint.");
+        }
+        long progress = in.readLong();
+        long total = in.readLong();
+        long savedAt = in.readLong();
+        byte[] state = new byte[in.readInt()];
+        in.readFully(state);
+        return new PeonCheckpoint(progress, total, new String(state, StandardCharsets.UTF_8), savedAt);
+    }
+
+    @Override
+    public void save(String key, PeonCheckpoint checkpoint) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] state = checkpoint.getState().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(MAGIC);
+        out.writeLong(checkpoint.getProgress());
+        out.writeLong(checkpoint.getTotal());
+        out.writeLong(checkpoint.getSavedAt());
+        out.writeInt(state.length);
+        out.write(state);
+        out.flush();
+
+        File file = getFile(key);
+        // Each thread writes a temporary file of its own, so saving the same key from two threads can not mix them.
+        File temporaryFile = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(getFile(key).toPath());
+    }
+
+    /**
+     * Gets the file of the checkpoint for a key. The key is encoded so that any key makes a valid file name.
+     *
+     * @param key The checkpoint key of the task.
+     * @return The checkpoint file.
+     */
+    private File getFile(String key) {
+        try {
+            return new File(directory, URLEncoder.encode(key, "UTF-8").replace("*", "%2A") + EXTENSION);
+        } catch(UnsupportedEncodingException e) {
+            // UTF-8 is always supported.
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.peon.checkpoint;
+
+/**
+ * The saved progress of a CheckpointingPeonTask: the progress and total of the task when the checkpoint was taken
+ * and the state the task needs to resume from that point, for example the index of the next item to process.
+ */
+public final class PeonCheckpoint {
+
+    /**
+     * The number of operations the task had performed.
+     */
+    private final long progress;
+    /**
+     * The total number of operations of the task or -1 if it was unknown.
+     */
+    private final long total;
+    /**
+     * The state the task resumes from.
+     */
+    private final String state;
+    /**
+     * The time in milliseconds since the epoch the checkpoint was taken.
+     */
+    private final long savedAt;
+
+    /**
+     * Creates a checkpoint.
+     *
+     * @param progress The number of operations the task had performed.
+     * @param total The total number of operations of the task or -1 if it was unknown.
+     * @param state The state the task resumes from, never null.
+     * @param savedAt The time in milliseconds since the epoch the checkpoint was taken.
+     */
+    public PeonCheckpoint(long progress, long total, String state, long savedAt) {
+        if(state == null) {
+            throw new IllegalArgumentException("The state of a checkpoint may not be null.");
+        }
+        this.progress = progress;
+        this.total = total;
+        this.state = state;
+        this.savedAt = savedAt;
+    }
+
+    /**
+     * Gets the number of operations the task had performed when the checkpoint was taken.
+     *
+     * @return The progress of the task.
+     */
+    public long getProgress() {
+        return progress;
+    }
+
+    /**
+     * Gets the total number of operations of the task when the checkpoint was taken.
+     *
+     * @return The total of the task or -1 if it was unknown.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the state the task resumes from.
+     *
+     * @return The state of the task.
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Gets the time the checkpoint was taken.
+     *
+     * @return The time in milliseconds since the epoch the checkpoint was taken.
+     */
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "PeonCheckpoint[" + progress + "/" + total + ", " + state + "]";
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.peon.checkpoint;
+
+import java.io.IOException;
+
+/**
+ * Keeps the latest checkpoint of each CheckpointingPeonTask by its checkpoint key, so that a task that was
+ * cancelled, ended with an exception or was stopped with the application can resume where it left off. The store
+ * is called from the worker threads of the tasks, so implementations must be threadsafe.
+ */
+public interface PeonCheckpointStore {
+
+    /**
+     * Loads the latest checkpoint for a key.
+     *
+     * @param key The checkpoint key of the task.
+     * @return The latest checkpoint or null if there is none.
+     * @throws IOException if the checkpoint could not be read.
+     */
+    public PeonCheckpoint load(String key) throws IOException;
+
+    /**
+     * Saves a checkpoint for a key, replacing the previous one. A checkpoint is either saved completely or not at
+     * all, so a crash while saving leaves the previous checkpoint in place.
+     *
+     * @param key The checkpoint key of the task.
+     * @param checkpoint The checkpoint.
+     * @throws IOException if the checkpoint could not be written.
+     */
+    public void save(String key, PeonCheckpoint checkpoint) throws IOException;
+
+    /**
+     * Deletes the checkpoint for a key, if any, for example when the task has finished.
+     *
+     * @param key The checkpoint key of the task.
+     * @throws IOException if the checkpoint could not be deleted.
+     */
+    public void delete(String key) throws IOException;
+
+}
@@ -0,0 +1,20 @@
+package org.peon.event;
+
+import java.util.List;
+
+/**
+ * A listener that will be notified of events fired for many tasks at once in a single call. When the peon master
+ * executes or starts several tasks together, for example through executeAll(), it fires the WAITING, STARTING and
+ * QUEUED events of those tasks as batches. Batch listeners receive each batch through peonTaskEvents() while other
+ * listeners receive the events one at a time. Events that are not fired in batches are received through peonTaskEvent().
+ */
+public interface PeonTaskBatchListener extends PeonTaskListener {
+
+    /**
+     * Receives a batch of events fired by the tasks relayed by the peon master.
+     *
+     * @param events The events that were fired, in the order they were fired.
+     */
+    public void peonTaskEvents(List<PeonTaskEvent> events);
+
+}
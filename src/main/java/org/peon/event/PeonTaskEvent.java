@@ -8,12 +8,27 @@ import org.peon.PeonTask;
 public class PeonTaskEvent {
 
     public enum EventId {
+        /**
+         * The task is blocked by a currently running task and has been put in the wait queue of the peon master.
+         * The task will be started, beginning with a STARTING event, as soon as the tasks that block it are done.
+         */
+        WAITING,
+        /**
+         * The task has been completed with a result from the result cache of the peon master without being executed.
+         * The FINISHED and DONE events follow at once.
+         */
+        CACHED,
         /**
          * The task is about to start. The task has been added to the current tasks in the peon master and task
          * starting objects that want to check for blocks for the tasks they start should perform such a check
          * when this event is fired.
          */
         STARTING,
+        /**
+         * The task has been handed to its peon and is waiting for a free worker thread. The task is not executing
+         * until the STARTED event is fired, so user interfaces can use this event to show the task as waiting.
+         */
+        QUEUED,
         /**
          * The task has been started and is executing.
          */
@@ -26,6 +41,11 @@ public class PeonTaskEvent {
          * The status property of the task has been updated.
          */
         STATUS,
+        /**
+         * A StreamingPeonTask has published chunks of its results that have not been taken yet. Listeners take the
+         * chunks from the task with takeChunks(). One event may stand for several chunks.
+         */
+        PUBLISHED,
         /**
          * The task has been cancelled by user interaction.
          */
@@ -44,6 +64,10 @@ public class PeonTaskEvent {
          * The task has finished successfully. If the task produces a result, the result should be present in the task when this event is fired.
          */
         FINISHED,
+        /**
+         * The task did not finish within the time it was allowed to take and has been stopped by the peon master.
+         */
+        TIMED_OUT,
         /**
          * The end of the task lifecycle. The task has been removed from the current tasks in the peon master and task starting
          * objects that want to check for blocks for the tasks they start should perform such a check when this event is fired.
@@ -0,0 +1,301 @@
+package org.peon.executor;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.peon.Peon;
+import org.peon.PeonTask;
+import org.peon.PeonTaskState;
+import org.peon.ProgressThrottle;
+import org.peon.PropertyChangeCoalescer;
+
+/**
+ * The peon is the object that makes sure the peon tasks are run in a separate worker thread and that
+ * relays events from the task on the worker thread to the peon master on the GUI event thread. The peon master
+ * creates a new peon for each task the master is told to execute and then tells that peon to work().
+ *
+ * This is an implementation of a peon for applications without a GUI event thread. The task is run by a
+ * worker executor and events from the task are relayed to the peon's property change listeners by a callback
+ * executor of the application's choosing. Events from one peon are always delivered one at a time and in the
+ * order they were fired, even if the callback executor has more than one thread. Events that pile up while the
+ * callback executor is busy are collapsed to the latest value per property, but changes of the task state are
+ * always delivered.
+ *
+ * Like SwingWorker, the peon fires "state" property change events with a StateValue of STARTED when the
+ * worker thread starts executing the task and DONE when the task has stopped executing or has been cancelled.
+ */
+public class ExecutorPeon implements Peon, PropertyChangeListener {
+
+    /**
+     * The lifecycle states of the peon itself, as opposed to the states of the task it executes.
+     */
+    public enum StateValue {
+        /**
+         * The peon has been created but the task has not started executing yet.
+         */
+        PENDING,
+        /**
+         * The task is executing in a worker thread.
+         */
+        STARTED,
+        /**
+         * The task has stopped executing or has been cancelled.
+         */
+        DONE;
+    }
+
+    /**
+     * Keeps track of and sends events to registered property change listeners.
+     */
+    private final PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
+    /**
+     * The executor that runs the task.
+     */
+    private final Executor workerExecutor;
+    /**
+     * The executor that delivers events to the property change listeners.
+     */
+    private final Executor callbackExecutor;
+    /**
+     * Events fired by the task that have not yet been delivered to the property change listeners.
+     */
+    private final Queue<PropertyChangeEvent> pendingEvents = new ConcurrentLinkedQueue<PropertyChangeEvent>();
+    /**
+     * True while a delivery of pending events is scheduled on or running in the callback executor.
+     */
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    /**
+     * Delivers the pending events on the callback executor.
+     */
+    private final Runnable deliverer = new Runnable() {
+        @Override
+        public void run() {
+            deliverPendingEvents();
+        }
+    };
+    /**
+     * The future that runs the task in the worker executor.
+     */
+    private final Worker worker = new Worker();
+    /**
+     * The current lifecycle state of the peon.
+     */
+    private volatile StateValue state = StateValue.PENDING;
+    /**
+     * Limits the rate of relayed progress events or null if the rate is unlimited.
+     */
+    private volatile ProgressThrottle progressThrottle;
+
+    private PeonTask peonTask;
+
+    /**
+     * Creates a new peon.
+     *
+     * @param peonTask The task the peon will execute.
+     * @param workerExecutor The executor that will run the task.
+     * @param callbackExecutor The executor that will deliver events to the property change listeners.
+     */
+    public ExecutorPeon(PeonTask peonTask, Executor workerExecutor, Executor callbackExecutor) {
+        this.workerExecutor = workerExecutor;
+        this.callbackExecutor = callbackExecutor;
+        setPeonTask(peonTask);
+    }
+
+    /**
+     * The task the peon will execute.
+     *
+     * @return The task the peon will execute.
+     */
+    @Override
+    public PeonTask getPeonTask() {
+        return peonTask;
+    }
+    /**
+     * Sets the task the peon will execute and adds itself as a property listener on the task.
+     *
+     * @param peonTask The task the peon will execute.
+     */
+    @Override
+    public void setPeonTask(PeonTask peonTask) {
+        this.peonTask = peonTask;
+        peonTask.addPropertyChangeListener(this);
+    }
+
+    /**
+     * Gets the current lifecycle state of the peon.
+     *
+     * @return The current lifecycle state of the peon.
+     */
+    public StateValue getState() {
+        return state;
+    }
+
+    /**
+     * Sets the maximum number of progress events per second that will be relayed from the task to the callback
+     * executor. Progress events above the limit are dropped, except that the latest dropped progress event is
+     * always relayed before the next change of the task state.
+     *
+     * @param maxProgressEventRate The maximum number of progress events per second or 0 for no limit.
+     */
+    public void setMaxProgressEventRate(int maxProgressEventRate) {
+        this.progressThrottle = (maxProgressEventRate > 0 ? new ProgressThrottle(maxProgressEventRate) : null);
+    }
+
+    /**
+     * Tells the peon to start working on its task in a separate worker thread by handing it to the worker executor.
+     */
+    @Override
+    public void work() {
+        workerExecutor.execute(worker);
+    }
+
+    /**
+     * Cancels the execution of the task. If the task is executing the worker thread will be interrupted.
+     * The peon will go to the DONE state immediately.
+     */
+    public void cancel() {
+        worker.cancel(true);
+    }
+
+    /**
+     * Handles an event fired by the task on the worker thread by queueing it for delivery on the callback executor.
+     * If the property is the task state and the new value is PeonTaskState.CANCELLED, PeonTaskState.FAILED or
+     * PeonTaskState.TIMED_OUT, it will also cancel itself to terminate the worker thread. Progress events above the
+     * maximum progress event rate are dropped.
+     *
+     * @param e The event that will be relayed from the task on the worker thread to the property change listeners
+     *          on the callback executor.
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent e) {
+        ProgressThrottle progressThrottle = this.progressThrottle;
+        if(progressThrottle != null) {
+            if(e.getPropertyName().equals("progress")) {
+                if(!progressThrottle.permit(e)) {
+                    return;
+                }
+            } else if(e.getPropertyName().equals("state")) {
+                PropertyChangeEvent heldBack = progressThrottle.takeHeldBack();
+                if(heldBack != null) {
+                    publish(heldBack);
+                }
+            }
+        }
+        publish(e);
+        if(e.getPropertyName().equals("state")) {
+            if(e.getNewValue() == PeonTaskState.CANCELLED
+               || e.getNewValue() == PeonTaskState.FAILED
+               || e.getNewValue() == PeonTaskState.TIMED_OUT) {
+                cancel();
+            }
+        }
+    }
+
+    /**
+     * Adds a property change listener to the peon. These listeners will receive events fired by
+     * the task on the worker thread on the callback executor.
+     *
+     * @param propertyChangeListener The listener that will be added.
+     */
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener propertyChangeListener) {
+        propertyChangeSupport.addPropertyChangeListener(propertyChangeListener);
+    }
+
+    /**
+     * Removes a property change listener from the peon.
+     *
+     * @param propertyChangeListener The listener that will be removed.
+     */
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener propertyChangeListener) {
+        propertyChangeSupport.removePropertyChangeListener(propertyChangeListener);
+    }
+
+    /**
+     * Changes the lifecycle state of the peon and queues a "state" event for delivery on the callback executor.
+     *
+     * @param state The new lifecycle state of the peon.
+     */
+    private void setState(StateValue state) {
+        StateValue oldState = this.state;
+        this.state = state;
+        publish(new PropertyChangeEvent(this, "state", oldState, state));
+    }
+
+    /**
+     * Queues an event for delivery and schedules a delivery on the callback executor unless one is
+     * already scheduled. If the callback executor rejects the delivery, for example because it has been shut down,
+     * the events are delivered on the calling thread instead so that the task still reaches DONE.
+     *
+     * @param e The event that will be delivered.
+     */
+    private void publish(PropertyChangeEvent e) {
+        pendingEvents.add(e);
+        if(delivering.compareAndSet(false, true)) {
+            try {
+                callbackExecutor.execute(deliverer);
+            } catch(RejectedExecutionException ex) {
+                deliverPendingEvents();
+            }
+        }
+    }
+
+    /**
+     * Delivers all pending events to the property change listeners. Runs on the callback executor.
+     */
+    private void deliverPendingEvents() {
+        do {
+            List<PropertyChangeEvent> events = new ArrayList<PropertyChangeEvent>();
+            PropertyChangeEvent e;
+            while((e = pendingEvents.poll()) != null) {
+                events.add(e);
+            }
+            for(PropertyChangeEvent event : PropertyChangeCoalescer.coalesce(events)) {
+                propertyChangeSupport.firePropertyChange(event.getPropertyName(), event.getOldValue(), event.getNewValue());
+            }
+            delivering.set(false);
+        } while(!pendingEvents.isEmpty() && delivering.compareAndSet(false, true));
+    }
+
+    /**
+     * The future that runs the task and moves the peon through its lifecycle states.
+     */
+    private class Worker extends FutureTask<PeonTask> {
+
+        public Worker() {
+            super(new Callable<PeonTask>() {
+                @Override
+                public PeonTask call() {
+                    peonTask.execute();
+                    return peonTask;
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            if(!isDone()) {
+                setState(StateValue.STARTED);
+            }
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            setState(StateValue.DONE);
+        }
+
+    }
+
+}
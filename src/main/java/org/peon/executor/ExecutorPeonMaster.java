@@ -0,0 +1,218 @@
+package org.peon.executor;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.peon.AbstractPeonMaster;
+import org.peon.Peon;
+import org.peon.PeonTask;
+import org.peon.PeonTaskDescriptor;
+import org.peon.event.PeonTaskEvent;
+import org.peon.event.PeonTaskEvent.EventId;
+
+/**
+ * The PeonMaster keeps track of the active peons and tasks and relay events from the
+ * running tasks to listeners on the callback thread. All tasks should be run by calling
+ * the execute() method in a PeonMaster.
+ *
+ * This class provides a PeonMaster for applications without a GUI event thread, for example server or batch
+ * applications. Tasks are run by a worker ExecutorService and events are delivered to the task listeners by a
+ * callback Executor. Neither executor depends on AWT or Swing. By default the worker executor has one named
+ * daemon thread per available processor and the callback executor has a single named daemon thread.
+ *
+ * A category of tasks can be given its own worker executor, a bulkhead, so that a burst of slow tasks in that
+ * category only saturates its own threads and queue while tasks in other categories keep running on the shared
+ * worker executor. Tasks in a category with its own executor do not count towards the maximum number of working
+ * peons and are rejected with a RejectedExecutionException when the work queue of their executor is full.
+ *
+ * This class may be called from any thread. The WAITING, STARTING and QUEUED events are dispatched on the thread
+ * that calls execute() and all other events are dispatched on the callback executor.
+ *
+ * This class fires STARTED and DONE events when the ExecutorPeon state property changes to STARTED or DONE.
+ */
+public class ExecutorPeonMaster extends AbstractPeonMaster {
+
+    /**
+     * The executor that runs the tasks.
+     */
+    private final ExecutorService workerExecutor;
+    /**
+     * The executor that delivers events to the task listeners.
+     */
+    private final Executor callbackExecutor;
+    /**
+     * The executors that run the tasks of the categories that have their own, by category.
+     */
+    private final Map<String, ExecutorService> categoryExecutors = new ConcurrentHashMap<String, ExecutorService>();
+
+    /**
+     * Creates a peon master with one worker thread per available processor and a single callback thread.
+     */
+    public ExecutorPeonMaster() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a peon master with the given number of worker threads and a single callback thread. Call
+     * setMaxWorkingPeons() with the number of worker threads to have tasks wait in the run queue of the peon master,
+     * where they are dispatched by priority, instead of in the work queue of the worker executor.
+     *
+     * @param workerThreads The number of worker threads.
+     */
+    public ExecutorPeonMaster(int workerThreads) {
+        this(PeonExecutors.newWorkerExecutor("peon-worker", workerThreads), PeonExecutors.newCallbackExecutor("peon-callback"));
+    }
+
+    /**
+     * Creates a peon master that runs tasks in the given worker executor and delivers events to the task
+     * listeners in the given callback executor.
+     *
+     * @param workerExecutor The executor that will run the tasks.
+     * @param callbackExecutor The executor that will deliver events to the task listeners.
+     */
+    public ExecutorPeonMaster(ExecutorService workerExecutor, Executor callbackExecutor) {
+        this.workerExecutor = workerExecutor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Gets the executor that runs the tasks.
+     *
+     * @return The executor that runs the tasks.
+     */
+    public ExecutorService getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    /**
+     * Gets the executor that delivers events to the task listeners.
+     *
+     * @return The executor that delivers events to the task listeners.
+     */
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * Gets the executor that runs the tasks of a category.
+     *
+     * @param category The value of the @Category annotation of the tasks or an empty string for tasks without one.
+     * @return The executor of the category or null if the tasks of the category are run by the worker executor.
+     */
+    public ExecutorService getCategoryExecutor(String category) {
+        return categoryExecutors.get(category);
+    }
+
+    /**
+     * Sets the executor that runs the tasks of a category that are started from now on. The tasks of the category
+     * are no longer held in the run queue of this peon master, so the executor should limit and queue them by itself.
+     * An executor that is replaced is not shut down.
+     *
+     * @param category The value of the @Category annotation of the tasks or an empty string for tasks without one.
+     * @param executor The executor that will run the tasks of the category or null to run them in the worker executor.
+     */
+    public void setCategoryExecutor(String category, ExecutorService executor) {
+        if(executor == null) {
+            categoryExecutors.remove(category);
+        } else {
+            categoryExecutors.put(category, executor);
+        }
+    }
+
+    /**
+     * Creates an executor with a fixed number of named daemon threads and a bounded work queue that runs the
+     * tasks of a category from now on. The threads are named after the category.
+     *
+     * @param category The value of the @Category annotation of the tasks or an empty string for tasks without one.
+     * @param threads The number of threads that run the tasks of the category.
+     * @param queueCapacity The maximum number of tasks of the category waiting for a free thread.
+     * @return The new executor of the category.
+     */
+    public ExecutorService createCategoryExecutor(String category, int threads, int queueCapacity) {
+        ExecutorService executor = PeonExecutors.newWorkerExecutor("peon-" + category, threads, queueCapacity);
+        setCategoryExecutor(category, executor);
+        return executor;
+    }
+
+    /**
+     * Shuts down the worker executor, the category executors and, if it is an ExecutorService, the callback executor.
+     * Tasks that are already running or queued will be allowed to finish but no new tasks will be accepted. The
+     * callback executor is shut down in the background once the worker and category executors have terminated, so
+     * that the events of the remaining tasks, up to their DONE events, are still delivered.
+     */
+    public void shutdown() {
+        workerExecutor.shutdown();
+        for(ExecutorService categoryExecutor : categoryExecutors.values()) {
+            categoryExecutor.shutdown();
+        }
+        if(callbackExecutor instanceof ExecutorService) {
+            final ExecutorService callbackExecutorService = (ExecutorService)callbackExecutor;
+            final List<ExecutorService> workerExecutors = new ArrayList<ExecutorService>(categoryExecutors.values());
+            workerExecutors.add(workerExecutor);
+            new PeonThreadFactory("peon-shutdown").newThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for(ExecutorService executor : workerExecutors) {
+                            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                        }
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    callbackExecutorService.shutdown();
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * Executor peon masters create executor peons to execute the tasks, in the executor of the category of the task
+     * if it has one and in the worker executor otherwise.
+     *
+     * @return An executor peon to execute the provided task.
+     */
+    @Override
+    protected Peon createPeon(PeonTask peonTask) {
+        ExecutorService categoryExecutor = categoryExecutors.get(PeonTaskDescriptor.forTask(peonTask).getCategory());
+        ExecutorPeon executorPeon = new ExecutorPeon(peonTask, (categoryExecutor != null ? categoryExecutor : workerExecutor), callbackExecutor);
+        executorPeon.setMaxProgressEventRate(getMaxProgressEventRate());
+        return executorPeon;
+    }
+
+    /**
+     * Tasks in a category with its own executor are limited and queued by that executor instead of the run queue.
+     *
+     * @return True if the category of the task has its own executor.
+     */
+    @Override
+    protected boolean bypassesRunQueue(PeonTask peonTask) {
+        return categoryExecutors.containsKey(PeonTaskDescriptor.forTask(peonTask).getCategory());
+    }
+
+    /**
+     * Handles changes to the state property of the executor peon and relays them as STARTED and
+     * DONE peon events.
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent e) {
+        super.propertyChange(e);
+
+        Peon peon = (Peon)e.getSource();
+        PeonTask peonTask = peon.getPeonTask();
+
+        if(e.getPropertyName().equals("state")) {
+            if(e.getNewValue() == ExecutorPeon.StateValue.STARTED) {
+                firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.STARTED));
+            } else if(e.getNewValue() == ExecutorPeon.StateValue.DONE) {
+                peonTaskDone(peonTask);
+            }
+        }
+    }
+
+}
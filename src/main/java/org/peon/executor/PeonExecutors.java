@@ -0,0 +1,56 @@
+package org.peon.executor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory methods for the executors used by peon masters that are not tied to a GUI event thread.
+ */
+public final class PeonExecutors {
+
+    private PeonExecutors() {}
+
+    /**
+     * Creates a worker executor with a fixed number of named daemon threads and an unbounded work queue.
+     *
+     * @param namePrefix The prefix of the names of the worker threads.
+     * @param threads The number of worker threads.
+     * @return A new worker executor.
+     */
+    public static ExecutorService newWorkerExecutor(String namePrefix, int threads) {
+        return newWorkerExecutor(namePrefix, threads, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a worker executor with a fixed number of named daemon threads and a work queue that holds at
+     * most queueCapacity tasks waiting for a free worker thread. Tasks submitted when the queue is full are
+     * rejected with a RejectedExecutionException.
+     *
+     * @param namePrefix The prefix of the names of the worker threads.
+     * @param threads The number of worker threads.
+     * @param queueCapacity The maximum number of tasks waiting for a free worker thread.
+     * @return A new worker executor.
+     */
+    public static ExecutorService newWorkerExecutor(String namePrefix, int threads, int queueCapacity) {
+        BlockingQueue<Runnable> workQueue = (queueCapacity == Integer.MAX_VALUE
+                                             ? new LinkedBlockingQueue<Runnable>()
+                                             : new ArrayBlockingQueue<Runnable>(queueCapacity));
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, workQueue, new PeonThreadFactory(namePrefix));
+    }
+
+    /**
+     * Creates a callback executor with a single named daemon thread. Events from the running tasks are
+     * delivered to the peon master and its listeners on this thread, in the order they were fired.
+     *
+     * @param name The prefix of the name of the callback thread.
+     * @return A new callback executor.
+     */
+    public static ExecutorService newCallbackExecutor(String name) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new PeonThreadFactory(name));
+    }
+
+}
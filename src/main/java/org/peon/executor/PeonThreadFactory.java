@@ -0,0 +1,53 @@
+package org.peon.executor;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread factory that creates named daemon threads for peon worker and callback executors. The threads
+ * are named after the provided prefix followed by a sequence number, for example "peon-worker-1", so they
+ * can easily be identified in thread dumps and profilers.
+ */
+public class PeonThreadFactory implements ThreadFactory {
+
+    /**
+     * The prefix of the names of the threads created by this factory.
+     */
+    private final String namePrefix;
+    /**
+     * The sequence number of the next thread created by this factory.
+     */
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    /**
+     * Creates a new thread factory.
+     *
+     * @param namePrefix The prefix of the names of the threads created by this factory.
+     */
+    public PeonThreadFactory(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    /**
+     * Creates a new named daemon thread.
+     *
+     * @param runnable The runnable the thread will run.
+     * @return A new named daemon thread.
+     */
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Gets the prefix of the names of the threads created by this factory.
+     *
+     * @return The prefix of the names of the threads created by this factory.
+     */
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+}
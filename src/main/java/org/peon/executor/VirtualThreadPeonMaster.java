@@ -0,0 +1,35 @@
+package org.peon.executor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A PeonMaster that executes every task in its own virtual thread, which suits applications that run very
+ * large numbers of mostly I/O-bound tasks at the same time. Events are delivered to the task listeners by a
+ * callback executor of the application's choosing, by default a single named daemon thread.
+ *
+ * On JVMs that do not support virtual threads every task is executed in its own platform daemon thread
+ * instead. Use VirtualThreads.isAvailable() to check which kind of thread will be used.
+ *
+ * Like ExecutorPeonMaster, this class may be called from any thread.
+ */
+public class VirtualThreadPeonMaster extends ExecutorPeonMaster {
+
+    /**
+     * Creates a peon master that executes every task in its own virtual thread and delivers events on a single
+     * callback thread.
+     */
+    public VirtualThreadPeonMaster() {
+        this(PeonExecutors.newCallbackExecutor("peon-callback"));
+    }
+
+    /**
+     * Creates a peon master that executes every task in its own virtual thread and delivers events in the given
+     * callback executor.
+     *
+     * @param callbackExecutor The executor that will deliver events to the task listeners.
+     */
+    public VirtualThreadPeonMaster(Executor callbackExecutor) {
+        super(VirtualThreads.newThreadPerTaskExecutor("peon-virtual"), callbackExecutor);
+    }
+
+}
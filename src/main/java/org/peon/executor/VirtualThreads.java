@@ -0,0 +1,65 @@
+package org.peon.executor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates executors that run each task in a new virtual thread. The library is built for Java 8 so virtual
+ * threads are looked up reflectively. On JVMs that do not support virtual threads the executors fall back to
+ * a new platform daemon thread per task.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /**
+     * Checks if the running JVM supports virtual threads.
+     *
+     * @return True if the running JVM supports virtual threads.
+     */
+    public static boolean isAvailable() {
+        return newVirtualThreadFactory("peon-virtual") != null;
+    }
+
+    /**
+     * Creates an executor that runs each task in a new thread. The threads are virtual threads if the running
+     * JVM supports them and platform daemon threads if it does not.
+     *
+     * @param namePrefix The prefix of the names of the threads.
+     * @return A new thread-per-task executor.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = newVirtualThreadFactory(namePrefix);
+        if(threadFactory == null) {
+            threadFactory = new PeonThreadFactory(namePrefix);
+        }
+        // No core threads and no keep alive time, so every thread ends as soon as its task has been run.
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+    }
+
+    /**
+     * Creates a factory for named virtual threads, equivalent to Thread.ofVirtual().name(namePrefix + "-", 1).factory().
+     *
+     * @param namePrefix The prefix of the names of the threads.
+     * @return A virtual thread factory or null if the running JVM does not support virtual threads.
+     */
+    static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = ofVirtual.invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 1L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        } catch(ReflectiveOperationException e) {
+            // Virtual threads are either missing or a disabled preview feature in this JVM.
+            return null;
+        } catch(UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.peon.journal;
+
+import org.peon.PeonTaskState;
+
+/**
+ * A task recorded in a PeonTaskJournal that was not done when the journal was last closed.
+ */
+public final class JournaledTask {
+
+    /**
+     * The number the journal gave the task.
+     */
+    private final long id;
+    /**
+     * The name of the class of the task.
+     */
+    private final String taskClassName;
+    /**
+     * The restart data of the task or null if the task is not restartable.
+     */
+    private final String restartData;
+    /**
+     * The last state the task was recorded in.
+     */
+    private final PeonTaskState state;
+
+    JournaledTask(long id, String taskClassName, String restartData, PeonTaskState state) {
+        this.id = id;
+        this.taskClassName = taskClassName;
+        this.restartData = restartData;
+        this.state = state;
+    }
+
+    /**
+     * Gets the number the journal gave the task.
+     *
+     * @return The id of the task in the journal.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the name of the class of the task.
+     *
+     * @return The name of the class of the task.
+     */
+    public String getTaskClassName() {
+        return taskClassName;
+    }
+
+    /**
+     * Gets the restart data of the task.
+     *
+     * @return The restart data of the task or null if the task is not restartable.
+     */
+    public String getRestartData() {
+        return restartData;
+    }
+
+    /**
+     * Checks if the task can be executed again.
+     *
+     * @return True if the task is a RestartablePeonTask.
+     */
+    public boolean isRestartable() {
+        return restartData != null;
+    }
+
+    /**
+     * Gets the last state the task was recorded in. PeonTaskState.PENDING means the task was waiting or queued and
+     * PeonTaskState.ACTIVE that it was running.
+     *
+     * @return The last recorded state of the task.
+     */
+    public PeonTaskState getState() {
+        return state;
+    }
+
+    JournaledTask withState(PeonTaskState state) {
+        return new JournaledTask(id, taskClassName, restartData, state);
+    }
+
+    @Override
+    public String toString() {
+        return "JournaledTask[" + id + ", " + taskClassName + ", " + state + "]";
+    }
+
+}
@@ -0,0 +1,613 @@
+package org.peon.journal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.peon.PeonMaster;
+import org.peon.PeonTask;
+import org.peon.PeonTaskState;
+import org.peon.RestartablePeonTask;
+import org.peon.event.PeonTaskBatchListener;
+import org.peon.event.PeonTaskEvent;
+import org.peon.event.PeonTaskEvent.EventId;
+import org.peon.executor.PeonThreadFactory;
+
+/**
+ * An append-only journal of the tasks executed by a peon master, so that tasks that were not done when the
+ * application stopped can be executed again when it starts. Add the journal to the peon master as a task listener.
+ * It records each task when it is executed, when it starts and when it is done, along with the restart data of
+ * RestartablePeonTasks.
+ *
+ * Records are written to the file at once but made durable by a group commit: a background thread forces all
+ * records written since its last commit to the disk in a single call every commit interval, so the cost of a
+ * sync is shared by all the tasks executed in that interval. Call sync() to wait until all records written so far
+ * are durable. A crash may lose the records of the last commit interval and a record that was torn in half, which
+ * is detected by its checksum and cut off when the journal is opened again.
+ *
+ * When the journal is opened it reads the tasks that were not done from the previous run, which getUnfinishedTasks()
+ * returns, and rewrites the file to hold only those tasks. The file is rewritten the same way whenever it grows
+ * beyond the compaction threshold. Call recover() once the journal listens to the peon master to execute the
+ * unfinished restartable tasks again. A task that was executed again is only forgotten after its new execution has
+ * been recorded, so no task is lost, but a task may be executed again twice if the application stops in between.
+ */
+public class PeonTaskJournal implements PeonTaskBatchListener, Closeable {
+
+    /**
+     * The first four bytes of a journal file.
+     */
+    private static final int MAGIC = 0x50454f4e;
+    /**
+     * The version of the file format.
+     */
+    private static final byte VERSION = 1;
+    /**
+     * The length of the file header.
+     */
+    private static final int HEADER_LENGTH = 5;
+    /**
+     * The length of the header of each record, the length and the checksum of the record.
+     */
+    private static final int RECORD_HEADER_LENGTH = 8;
+    /**
+     * The largest record that is accepted when the journal is read. Anything longer is a torn or corrupt record.
+     */
+    private static final int MAX_RECORD_LENGTH = 1 << 24;
+    /**
+     * The record of a task that was executed.
+     */
+    private static final byte SUBMITTED = 1;
+    /**
+     * The record of a change of the state of a task.
+     */
+    private static final byte STATE = 2;
+    /**
+     * The record of a task that is done.
+     */
+    private static final byte DONE = 3;
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+    /**
+     * The channel the records are written to. Replaced when the journal is compacted.
+     */
+    private volatile FileChannel channel;
+    /**
+     * Serializes writes to the channel and guards the ids, the live tasks and the number of bytes written.
+     */
+    private final Object writeLock = new Object();
+    /**
+     * Serializes commits and compactions. Acquired before the write lock when both are needed.
+     */
+    private final Object commitLock = new Object();
+    /**
+     * The number of bytes written to the file.
+     */
+    private long written;
+    /**
+     * The number of bytes of the file that are known to be durable.
+     */
+    private volatile long committed;
+    /**
+     * The size of the file after it was last compacted.
+     */
+    private long compactedSize;
+    /**
+     * The id that will be given to the next task.
+     */
+    private long nextId = 1;
+    /**
+     * The ids of the tasks of this run that are not done.
+     */
+    private final Map<PeonTask, Long> ids = new HashMap<PeonTask, Long>();
+    /**
+     * The tasks that are not done by id, including the unfinished tasks of the previous run that have not been
+     * forgotten, in the order they were executed.
+     */
+    private final Map<Long, JournaledTask> live = new LinkedHashMap<Long, JournaledTask>();
+    /**
+     * The tasks that were not done when the journal was last closed.
+     */
+    private final List<JournaledTask> unfinishedTasks;
+    /**
+     * Commits the records in the background.
+     */
+    private final ScheduledThreadPoolExecutor committer;
+    /**
+     * The size in bytes the file may grow to before it is compacted.
+     */
+    private volatile long compactionThreshold = 16 * 1024 * 1024;
+    /**
+     * The last error that occurred while recording an event or committing, or null if there was none.
+     */
+    private volatile IOException error;
+
+    /**
+     * Opens a journal that commits its records every ten milliseconds.
+     *
+     * @param file The journal file, which is created if it does not exist.
+     * @throws IOException if the file could not be read or written.
+     */
+    public PeonTaskJournal(File file) throws IOException {
+        this(file, 10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a journal that commits its records at the given interval.
+     *
+     * @param file The journal file, which is created if it does not exist.
+     * @param commitInterval The time between two commits.
+     * @param unit The unit of the commit interval.
+     * @throws IOException if the file could not be read or written.
+     */
+    public PeonTaskJournal(File file, long commitInterval, TimeUnit unit) throws IOException {
+        this.file = file;
+        long length = read();
+        this.unfinishedTasks = Collections.unmodifiableList(new ArrayList<JournaledTask>(live.values()));
+        if(length < 0) {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            this.written = 0;
+        } else {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            this.written = length;
+        }
+        compact();
+        this.committer = new ScheduledThreadPoolExecutor(1, new PeonThreadFactory("peon-journal"));
+        this.committer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                commit();
+            }
+        }, commitInterval, commitInterval, unit);
+    }
+
+    /**
+     * Gets the journal file.
+     *
+     * @return The journal file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the tasks that were not done when the journal was last closed, in the order they were executed.
+     *
+     * @return An unmodifiable list of the unfinished tasks of the previous run.
+     */
+    public List<JournaledTask> getUnfinishedTasks() {
+        return unfinishedTasks;
+    }
+
+    /**
+     * Executes the unfinished restartable tasks of the previous run again in the peon master. The journal should
+     * already listen to the peon master, so that the new executions are recorded before the old ones are forgotten.
+     * Unfinished tasks that are not restartable, or that the restorer returns null for, are forgotten. Tasks that
+     * could not be restored or executed are kept, so that they are recovered again the next time the journal is opened.
+     *
+     * @param peonMaster The peon master that will execute the tasks.
+     * @param restorer Creates the tasks again from their restart data.
+     * @return The tasks that were executed again.
+     */
+    public List<PeonTask> recover(PeonMaster peonMaster, PeonTaskRestorer restorer) {
+        List<PeonTask> recovered = new ArrayList<PeonTask>();
+        for(JournaledTask journaledTask : unfinishedTasks) {
+            if(!journaledTask.isRestartable()) {
+                forget(journaledTask);
+                continue;
+            }
+            PeonTask peonTask;
+            try {
+                peonTask = restorer.restore(journaledTask.getTaskClassName(), journaledTask.getRestartData());
+            } catch(Exception e) {
+                continue;
+            }
+            if(peonTask == null) {
+                forget(journaledTask);
+                continue;
+            }
+            try {
+                peonMaster.execute(peonTask);
+            } catch(RuntimeException e) {
+                continue;
+            }
+            forget(journaledTask);
+            recovered.add(peonTask);
+        }
+        return recovered;
+    }
+
+    /**
+     * Records that an unfinished task of the previous run is done, so that it is not recovered again.
+     *
+     * @param journaledTask An unfinished task of the previous run.
+     */
+    public void forget(JournaledTask journaledTask) {
+        synchronized(writeLock) {
+            if(live.remove(journaledTask.getId()) != null) {
+                write(Collections.singletonList(encode(DONE, journaledTask.getId(), null, null)));
+            }
+        }
+    }
+
+    /**
+     * Records an event fired by the peon master.
+     *
+     * @param e The event.
+     */
+    @Override
+    public void peonTaskEvent(PeonTaskEvent e) {
+        peonTaskEvents(Collections.singletonList(e));
+    }
+
+    /**
+     * Records a batch of events fired by the peon master with a single write.
+     *
+     * @param events The events.
+     */
+    @Override
+    public void peonTaskEvents(List<PeonTaskEvent> events) {
+        synchronized(writeLock) {
+            List<byte[]> records = new ArrayList<byte[]>(events.size());
+            for(PeonTaskEvent e : events) {
+                byte[] record = record(e);
+                if(record != null) {
+                    records.add(record);
+                }
+            }
+            if(!records.isEmpty()) {
+                write(records);
+            }
+        }
+    }
+
+    /**
+     * Updates the live tasks with an event and encodes the record of the event, if it needs one.
+     *
+     * @param e The event.
+     * @return The record of the event or null if the event is not recorded.
+     */
+    private byte[] record(PeonTaskEvent e) {
+        PeonTask peonTask = e.getSource();
+        EventId id = e.getId();
+        if(id == EventId.WAITING || id == EventId.STARTING) {
+            if(ids.containsKey(peonTask)) {
+                return null;
+            }
+            long taskId = nextId++;
+            String restartData = (peonTask instanceof RestartablePeonTask ? ((RestartablePeonTask<?>)peonTask).getRestartData() : null);
+            ids.put(peonTask, taskId);
+            live.put(taskId, new JournaledTask(taskId, peonTask.getClass().getName(), restartData, PeonTaskState.PENDING));
+            return encode(SUBMITTED, taskId, peonTask.getClass().getName(), restartData);
+        } else if(id == EventId.DONE) {
+            Long taskId = ids.remove(peonTask);
+            if(taskId == null) {
+                return null;
+            }
+            live.remove(taskId);
+            return encode(DONE, taskId, null, null);
+        } else if(id == EventId.STARTED || id == EventId.CANCELLED || id == EventId.FAILED || id == EventId.EXCEPTION
+                  || id == EventId.FINISHED || id == EventId.TIMED_OUT) {
+            Long taskId = ids.get(peonTask);
+            if(taskId == null) {
+                return null;
+            }
+            PeonTaskState state = (id == EventId.STARTED ? PeonTaskState.ACTIVE : peonTask.getState());
+            live.put(taskId, live.get(taskId).withState(state));
+            return encode(STATE, taskId, state.name(), null);
+        }
+        return null;
+    }
+
+    /**
+     * Encodes a record.
+     *
+     * @param type The type of the record.
+     * @param taskId The id of the task.
+     * @param first The class name of the task for SUBMITTED records or the name of the state for STATE records.
+     * @param second The restart data of the task for SUBMITTED records, if any.
+     * @return The record, including its length and checksum.
+     */
+    private static byte[] encode(byte type, long taskId, String first, String second) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(type);
+            out.writeLong(taskId);
+            if(type == SUBMITTED) {
+                writeString(out, first);
+                out.writeBoolean(second != null);
+                if(second != null) {
+                    writeString(out, second);
+                }
+            } else if(type == STATE) {
+                writeString(out, first);
+            }
+            out.flush();
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), RECORD_HEADER_LENGTH, record.capacity() - RECORD_HEADER_LENGTH);
+            record.putInt(0, record.capacity() - RECORD_HEADER_LENGTH);
+            record.putInt(4, (int) crc.getValue());
+            return record.array();
+        } catch(IOException e) {
+            // Writing to a byte array does not fail.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes records to the end of the file. Must be called with the write lock held.
+     *
+     * @param records The records.
+     */
+    private void write(List<byte[]> records) {
+        int length = 0;
+        for(byte[] record : records) {
+            length += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for(byte[] record : records) {
+            buffer.put(record);
+        }
+        buffer.flip();
+        try {
+            while(buffer.hasRemaining()) {
+                written += channel.write(buffer, written);
+            }
+        } catch(IOException e) {
+            this.error = e;
+        }
+    }
+
+    /**
+     * Makes all records written so far durable. If another thread is committing, this waits for it and only forces
+     * the file again if that commit did not cover all the records written before this call.
+     *
+     * @throws IOException if the file could not be forced to the disk.
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized(writeLock) {
+            target = written;
+        }
+        synchronized(commitLock) {
+            if(committed >= target) {
+                return;
+            }
+            long covered;
+            synchronized(writeLock) {
+                covered = written;
+            }
+            channel.force(false);
+            committed = covered;
+        }
+    }
+
+    /**
+     * Commits the records written since the last commit and compacts the file if it has grown beyond the threshold.
+     * Runs in the background.
+     */
+    private void commit() {
+        try {
+            sync();
+            long written;
+            synchronized(writeLock) {
+                written = this.written;
+            }
+            if(written > compactionThreshold && written > 2 * compactedSize) {
+                compact();
+            }
+        } catch(IOException e) {
+            this.error = e;
+        }
+    }
+
+    /**
+     * Rewrites the file to hold only the tasks that are not done. The new file is written next to the old one, forced
+     * to the disk and moved over the old one, so a crash while compacting leaves either file intact.
+     *
+     * @throws IOException if the file could not be rewritten.
+     */
+    public void compact() throws IOException {
+        synchronized(commitLock) {
+            synchronized(writeLock) {
+                File compactedFile = new File(file.getPath() + ".tmp");
+                FileChannel compacted = FileChannel.open(compactedFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                         StandardOpenOption.TRUNCATE_EXISTING);
+                long length;
+                try {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                    header.putInt(MAGIC).put(VERSION).flip();
+                    List<byte[]> records = new ArrayList<byte[]>(live.size());
+                    for(JournaledTask journaledTask : live.values()) {
+                        records.add(encode(SUBMITTED, journaledTask.getId(), journaledTask.getTaskClassName(), journaledTask.getRestartData()));
+                        if(journaledTask.getState() != PeonTaskState.PENDING) {
+                            records.add(encode(STATE, journaledTask.getId(), journaledTask.getState().name(), null));
+                        }
+                    }
+                    compacted.write(header);
+                    for(byte[] record : records) {
+                        ByteBuffer buffer = ByteBuffer.wrap(record);
+                        while(buffer.hasRemaining()) {
+                            compacted.write(buffer);
+                        }
+                    }
+                    compacted.force(true);
+                    length = compacted.position();
+                } finally {
+                    compacted.close();
+                }
+                channel.close();
+                Files.move(compactedFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+                written = length;
+                committed = length;
+                compactedSize = length;
+            }
+        }
+    }
+
+    /**
+     * Reads the records of the previous run into the live tasks and cuts off a torn record at the end of the file.
+     *
+     * @return The length of the intact part of the file or -1 if there is no file.
+     * @throws IOException if the file could not be read or is not a journal.
+     */
+    private long read() throws IOException {
+        if(!file.exists()) {
+            return -1;
+        }
+        long length = HEADER_LENGTH;
+        InputStream input = new BufferedInputStream(new FileInputStream(file));
+        try {
+            DataInputStream in = new DataInputStream(input);
+            try {
+                if(in.readInt() != MAGIC || in.readByte() != VERSION) {
+                    throw new IOException(file + " is not a peon task journal.");
+                }
+            } catch(EOFException e) {
+                // A journal that was created but never written to.
+                return 0;
+            }
+            CRC32 crc = new CRC32();
+            while(true) {
+                byte[] record;
+                try {
+                    int recordLength = in.readInt();
+                    int checksum = in.readInt();
+                    if(recordLength <= 0 || recordLength > MAX_RECORD_LENGTH) {
+                        break;
+                    }
+                    record = new byte[recordLength];
+                    in.readFully(record);
+                    crc.reset();
+                    crc.update(record, 0, recordLength);
+                    if((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch(EOFException e) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(record)));
+                length += RECORD_HEADER_LENGTH + record.length;
+            }
+        } finally {
+            input.close();
+        }
+        return length;
+    }
+
+    /**
+     * Applies a record of the previous run to the live tasks.
+     *
+     * @param in The contents of the record.
+     * @throws IOException if the record could not be decoded.
+     */
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        long taskId = in.readLong();
+        nextId = Math.max(nextId, taskId + 1);
+        if(type == SUBMITTED) {
+            String taskClassName = readString(in);
+            String restartData = (in.readBoolean() ? readString(in) : null);
+            live.put(taskId, new JournaledTask(taskId, taskClassName, restartData, PeonTaskState.PENDING));
+        } else if(type == STATE) {
+            JournaledTask journaledTask = live.get(taskId);
+            if(journaledTask != null) {
+                live.put(taskId, journaledTask.withState(PeonTaskState.valueOf(readString(in))));
+            }
+        } else if(type == DONE) {
+            live.remove(taskId);
+        }
+    }
+
+    /**
+     * Gets the size in bytes the file may grow to before it is compacted.
+     *
+     * @return The compaction threshold in bytes.
+     */
+    public long getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Sets the size in bytes the file may grow to before it is compacted. The file is only compacted if it has also
+     * grown to twice its size after the last compaction. The default is 16 MB.
+     *
+     * @param compactionThreshold The compaction threshold in bytes.
+     */
+    public void setCompactionThreshold(long compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Gets the last error that occurred while recording an event or committing in the background. Events are
+     * recorded on the threads that fire them, which can not be interrupted by errors in the journal.
+     *
+     * @return The last error or null if there was none.
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Stops committing in the background, commits the records written so far and closes the file. Tasks that are
+     * not done stay in the journal and are returned by getUnfinishedTasks() when it is opened again.
+     *
+     * @throws IOException if the records could not be committed or the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        committer.shutdown();
+        try {
+            committer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized(commitLock) {
+            sync();
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package org.peon.journal;
+
+import org.peon.PeonTask;
+
+/**
+ * Creates restartable tasks again from the class name and restart data recorded in a PeonTaskJournal.
+ */
+public interface PeonTaskRestorer {
+
+    /**
+     * Creates a task again.
+     *
+     * @param taskClassName The name of the class of the task.
+     * @param restartData The restart data of the task.
+     * @return The new task or null if the task should not be executed again.
+     * @throws Exception if the task could not be created.
+     */
+    public PeonTask restore(String taskClassName, String restartData) throws Exception;
+
+}
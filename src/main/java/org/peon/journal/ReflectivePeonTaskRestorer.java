@@ -0,0 +1,38 @@
+package org.peon.journal;
+
+import org.peon.PeonTask;
+
+/**
+ * Creates restartable tasks again by calling the public constructor of the task class that takes the restart data
+ * as its only String argument.
+ */
+public class ReflectivePeonTaskRestorer implements PeonTaskRestorer {
+
+    /**
+     * The class loader that loads the task classes.
+     */
+    private final ClassLoader classLoader;
+
+    /**
+     * Creates a restorer that loads the task classes with the class loader of this class.
+     */
+    public ReflectivePeonTaskRestorer() {
+        this(ReflectivePeonTaskRestorer.class.getClassLoader());
+    }
+
+    /**
+     * Creates a restorer that loads the task classes with the given class loader.
+     *
+     * @param classLoader The class loader that will load the task classes.
+     */
+    public ReflectivePeonTaskRestorer(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public PeonTask restore(String taskClassName, String restartData) throws Exception {
+        Class<? extends PeonTask> taskClass = Class.forName(taskClassName, true, classLoader).asSubclass(PeonTask.class);
+        return taskClass.getConstructor(String.class).newInstance(restartData);
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.peon.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds with one bucket per power of two. Recording a duration is a
+ * handful of atomic additions and takes no locks, at the price of percentiles that are only accurate to within a
+ * factor of two.
+ */
+class LatencyHistogram {
+
+    /**
+     * The number of durations in each bucket. Bucket i holds durations from 2^(i-1) up to but not including 2^i
+     * nanoseconds, and bucket 0 holds durations of 0.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    /**
+     * The number of recorded durations.
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * The sum of the recorded durations.
+     */
+    private final LongAdder sum = new LongAdder();
+    /**
+     * The longest recorded duration.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds. Negative durations are recorded as 0.
+     */
+    public void record(long nanos) {
+        if(nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+        count.increment();
+        sum.add(nanos);
+        long currentMax;
+        while(nanos > (currentMax = max.get()) && !max.compareAndSet(currentMax, nanos));
+    }
+
+    /**
+     * Gets the number of recorded durations.
+     *
+     * @return The number of recorded durations.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded durations.
+     *
+     * @return The mean duration in nanoseconds or 0 if nothing has been recorded.
+     */
+    public double getMean() {
+        long count = this.count.sum();
+        return (count > 0 ? (double)sum.sum() / count : 0);
+    }
+
+    /**
+     * Gets the longest recorded duration.
+     *
+     * @return The longest duration in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets an upper bound of a percentile of the recorded durations.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound in nanoseconds of the bucket the percentile falls in, never more than the longest
+     *         recorded duration, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for(int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if(total == 0) {
+            return 0;
+        }
+        long rank = (long)Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= rank && counts[i] > 0) {
+                long upperBound = (i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1));
+                return Math.min(upperBound, getMax());
+            }
+        }
+        return getMax();
+    }
+
+}
@@ -0,0 +1,223 @@
+package org.peon.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.peon.PeonTask;
+import org.peon.PeonTaskDescriptor;
+import org.peon.PeonTaskState;
+
+/**
+ * A metrics sink that keeps counters and latency histograms per task class, per category and for all tasks, and
+ * exposes them as an MXBean. Recording a measurement takes no locks and allocates nothing once a class and category
+ * have been seen, so measuring has a negligible effect on the peon master.
+ *
+ * Set an instance as the metrics sink of a peon master and call register() to make the measurements available to
+ * JMX clients such as JConsole.
+ */
+public class PeonMetrics implements PeonMetricsSink, PeonMetricsMXBean {
+
+    /**
+     * The measurements of all tasks.
+     */
+    private volatile Stats total = new Stats("all");
+    /**
+     * The measurements of the tasks of each class.
+     */
+    private final ConcurrentMap<Class<?>, Stats> classStats = new ConcurrentHashMap<Class<?>, Stats>();
+    /**
+     * The measurements of the tasks of each category.
+     */
+    private final ConcurrentMap<String, Stats> categoryStats = new ConcurrentHashMap<String, Stats>();
+
+    /**
+     * Registers the metrics in the platform MBean server with the object name org.peon:type=PeonMetrics,name=[name].
+     *
+     * @param name The name that tells the metrics of different peon masters apart.
+     * @return The object name the metrics were registered with.
+     * @throws JMException if the metrics could not be registered.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("org.peon:type=PeonMetrics,name=" + ObjectName.quote(name));
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        mBeanServer.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public void taskSubmitted(PeonTask peonTask) {
+        PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+        total.submitted();
+        classStats(descriptor).submitted();
+        categoryStats(descriptor).submitted();
+    }
+
+    @Override
+    public void taskStarted(PeonTask peonTask, long queuedNanos) {
+        PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+        total.started(queuedNanos);
+        classStats(descriptor).started(queuedNanos);
+        categoryStats(descriptor).started(queuedNanos);
+    }
+
+    @Override
+    public void taskDone(PeonTask peonTask, PeonTaskState outcome, long runNanos) {
+        PeonTaskDescriptor descriptor = PeonTaskDescriptor.forTask(peonTask);
+        total.done(outcome, runNanos);
+        classStats(descriptor).done(outcome, runNanos);
+        categoryStats(descriptor).done(outcome, runNanos);
+    }
+
+    @Override
+    public PeonTaskMetrics getTotal() {
+        return total.snapshot();
+    }
+
+    @Override
+    public List<PeonTaskMetrics> getClassMetrics() {
+        return snapshot(classStats);
+    }
+
+    @Override
+    public List<PeonTaskMetrics> getCategoryMetrics() {
+        return snapshot(categoryStats);
+    }
+
+    /**
+     * Gets the measurements of the tasks of a class.
+     *
+     * @param clazz The task class.
+     * @return The measurements of the tasks of the class or null if no task of the class has been executed.
+     */
+    public PeonTaskMetrics getClassMetrics(Class<? extends PeonTask> clazz) {
+        Stats stats = classStats.get(clazz);
+        return (stats != null ? stats.snapshot() : null);
+    }
+
+    /**
+     * Gets the measurements of the tasks of a category.
+     *
+     * @param category The value of the @Category annotation of the tasks or an empty string for tasks without one.
+     * @return The measurements of the tasks of the category or null if no task of the category has been executed.
+     */
+    public PeonTaskMetrics getCategoryMetrics(String category) {
+        Stats stats = categoryStats.get(category);
+        return (stats != null ? stats.snapshot() : null);
+    }
+
+    @Override
+    public void reset() {
+        total = new Stats("all");
+        classStats.clear();
+        categoryStats.clear();
+    }
+
+    private Stats classStats(PeonTaskDescriptor descriptor) {
+        Stats stats = classStats.get(descriptor.getTaskClass());
+        if(stats == null) {
+            Stats newStats = new Stats(descriptor.getTaskClass().getName());
+            stats = classStats.putIfAbsent(descriptor.getTaskClass(), newStats);
+            if(stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    private Stats categoryStats(PeonTaskDescriptor descriptor) {
+        Stats stats = categoryStats.get(descriptor.getCategory());
+        if(stats == null) {
+            Stats newStats = new Stats(descriptor.getCategory());
+            stats = categoryStats.putIfAbsent(descriptor.getCategory(), newStats);
+            if(stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    private static <K> List<PeonTaskMetrics> snapshot(Map<K, Stats> statsMap) {
+        List<PeonTaskMetrics> metrics = new ArrayList<PeonTaskMetrics>();
+        for(Stats stats : statsMap.values()) {
+            metrics.add(stats.snapshot());
+        }
+        return metrics;
+    }
+
+    private static double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * The counters and histograms of the tasks of one class, one category or all tasks.
+     */
+    private static class Stats {
+
+        private final String name;
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder started = new LongAdder();
+        private final AtomicLong running = new AtomicLong();
+        private final AtomicLong peakRunning = new AtomicLong();
+        private final LongAdder finished = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder exceptions = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LatencyHistogram queueTime = new LatencyHistogram();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+
+        public Stats(String name) {
+            this.name = name;
+        }
+
+        public void submitted() {
+            submitted.increment();
+        }
+
+        public void started(long queuedNanos) {
+            started.increment();
+            queueTime.record(queuedNanos);
+            long running = this.running.incrementAndGet();
+            long peakRunning;
+            while(running > (peakRunning = this.peakRunning.get()) && !this.peakRunning.compareAndSet(peakRunning, running));
+        }
+
+        public void done(PeonTaskState outcome, long runNanos) {
+            if(runNanos >= 0) {
+                running.decrementAndGet();
+                runTime.record(runNanos);
+            }
+            if(outcome == PeonTaskState.FINISHED) {
+                finished.increment();
+            } else if(outcome == PeonTaskState.FAILED) {
+                failed.increment();
+            } else if(outcome == PeonTaskState.EXCEPTION) {
+                exceptions.increment();
+            } else if(outcome == PeonTaskState.TIMED_OUT) {
+                timedOut.increment();
+            } else {
+                cancelled.increment();
+            }
+        }
+
+        public PeonTaskMetrics snapshot() {
+            return new PeonTaskMetrics(name, submitted.sum(), started.sum(), running.get(), peakRunning.get(),
+                                       finished.sum(), failed.sum(), exceptions.sum(), cancelled.sum(), timedOut.sum(),
+                                       millis(queueTime.getMean()), millis(queueTime.getPercentile(99)), millis(queueTime.getMax()),
+                                       millis(runTime.getMean()), millis(runTime.getPercentile(99)), millis(runTime.getMax()));
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.peon.metrics;
+
+import java.util.List;
+
+/**
+ * The management interface of PeonMetrics, through which the measurements of a peon master can be read with JMX.
+ */
+public interface PeonMetricsMXBean {
+
+    /**
+     * Gets the measurements of all tasks.
+     *
+     * @return The measurements of all tasks.
+     */
+    public PeonTaskMetrics getTotal();
+
+    /**
+     * Gets the measurements of the tasks of each class that has been executed.
+     *
+     * @return A list of the measurements of each task class.
+     */
+    public List<PeonTaskMetrics> getClassMetrics();
+
+    /**
+     * Gets the measurements of the tasks of each category that has been executed. Tasks without a @Category
+     * annotation are measured in the category with an empty name.
+     *
+     * @return A list of the measurements of each category.
+     */
+    public List<PeonTaskMetrics> getCategoryMetrics();
+
+    /**
+     * Forgets all measurements.
+     */
+    public void reset();
+
+}
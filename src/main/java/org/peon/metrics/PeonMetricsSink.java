@@ -0,0 +1,39 @@
+package org.peon.metrics;
+
+import org.peon.PeonTask;
+import org.peon.PeonTaskState;
+
+/**
+ * Receives measurements of the tasks executed by a peon master. Set a sink on the peon master with setMetricsSink()
+ * to start measuring. The sink is called synchronously on the thread that fires the corresponding task event, so
+ * implementations must be threadsafe and should return quickly. Use PeonTaskDescriptor.forTask() to get the class
+ * and category of a task.
+ */
+public interface PeonMetricsSink {
+
+    /**
+     * Called when a task has been executed, either when it is started or when it is put in the wait queue.
+     *
+     * @param peonTask The task that was executed.
+     */
+    public void taskSubmitted(PeonTask peonTask);
+
+    /**
+     * Called when the worker thread of a task starts executing it.
+     *
+     * @param peonTask The task that was started.
+     * @param queuedNanos The time in nanoseconds from when the task was executed until its worker thread started it.
+     */
+    public void taskStarted(PeonTask peonTask, long queuedNanos);
+
+    /**
+     * Called when a task is done.
+     *
+     * @param peonTask The task that is done.
+     * @param outcome The state of the task when it was done.
+     * @param runNanos The time in nanoseconds from when the worker thread started the task until it was done or -1
+     *                 if the task was never started.
+     */
+    public void taskDone(PeonTask peonTask, PeonTaskState outcome, long runNanos);
+
+}
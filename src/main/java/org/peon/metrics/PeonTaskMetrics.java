@@ -0,0 +1,199 @@
+package org.peon.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A snapshot of the measurements of the tasks of one class, one category or all tasks. Times are in milliseconds
+ * and percentiles are upper bounds accurate to within a factor of two.
+ */
+public class PeonTaskMetrics {
+
+    private final String name;
+    private final long submitted;
+    private final long started;
+    private final long running;
+    private final long peakRunning;
+    private final long finished;
+    private final long failed;
+    private final long exceptions;
+    private final long cancelled;
+    private final long timedOut;
+    private final double meanQueueTime;
+    private final double p99QueueTime;
+    private final double maxQueueTime;
+    private final double meanRunTime;
+    private final double p99RunTime;
+    private final double maxRunTime;
+
+    /**
+     * Creates a snapshot of measurements. See the getters for the meaning of each value.
+     */
+    @ConstructorProperties({"name", "submitted", "started", "running", "peakRunning", "finished", "failed", "exceptions",
+                            "cancelled", "timedOut", "meanQueueTime", "p99QueueTime", "maxQueueTime", "meanRunTime",
+                            "p99RunTime", "maxRunTime"})
+    public PeonTaskMetrics(String name, long submitted, long started, long running, long peakRunning, long finished,
+                           long failed, long exceptions, long cancelled, long timedOut, double meanQueueTime,
+                           double p99QueueTime, double maxQueueTime, double meanRunTime, double p99RunTime, double maxRunTime) {
+        this.name = name;
+        this.submitted = submitted;
+        this.started = started;
+        this.running = running;
+        this.peakRunning = peakRunning;
+        this.finished = finished;
+        this.failed = failed;
+        this.exceptions = exceptions;
+        this.cancelled = cancelled;
+        this.timedOut = timedOut;
+        this.meanQueueTime = meanQueueTime;
+        this.p99QueueTime = p99QueueTime;
+        this.maxQueueTime = maxQueueTime;
+        this.meanRunTime = meanRunTime;
+        this.p99RunTime = p99RunTime;
+        this.maxRunTime = maxRunTime;
+    }
+
+    /**
+     * Gets the name of the measured tasks.
+     *
+     * @return The name of the task class, the name of the category or "all".
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of tasks that have been executed.
+     *
+     * @return The number of tasks that have been executed.
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Gets the number of tasks that have been started by a worker thread.
+     *
+     * @return The number of tasks that have been started by a worker thread.
+     */
+    public long getStarted() {
+        return started;
+    }
+
+    /**
+     * Gets the number of tasks that have been started by a worker thread and are not done yet.
+     *
+     * @return The number of tasks that are running.
+     */
+    public long getRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the highest number of tasks that have been running at the same time.
+     *
+     * @return The highest number of tasks that have been running at the same time.
+     */
+    public long getPeakRunning() {
+        return peakRunning;
+    }
+
+    /**
+     * Gets the number of tasks that were done in the state PeonTaskState.FINISHED.
+     *
+     * @return The number of finished tasks.
+     */
+    public long getFinished() {
+        return finished;
+    }
+
+    /**
+     * Gets the number of tasks that were done in the state PeonTaskState.FAILED.
+     *
+     * @return The number of failed tasks.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the number of tasks that were done in the state PeonTaskState.EXCEPTION.
+     *
+     * @return The number of tasks that ended with an exception.
+     */
+    public long getExceptions() {
+        return exceptions;
+    }
+
+    /**
+     * Gets the number of tasks that were done in the state PeonTaskState.CANCELLED.
+     *
+     * @return The number of cancelled tasks.
+     */
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Gets the number of tasks that were done in the state PeonTaskState.TIMED_OUT.
+     *
+     * @return The number of timed out tasks.
+     */
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Gets the mean time from when a task was executed until its worker thread started it.
+     *
+     * @return The mean queue time in milliseconds.
+     */
+    public double getMeanQueueTime() {
+        return meanQueueTime;
+    }
+
+    /**
+     * Gets the 99th percentile of the time from when a task was executed until its worker thread started it.
+     *
+     * @return The 99th percentile of the queue time in milliseconds.
+     */
+    public double getP99QueueTime() {
+        return p99QueueTime;
+    }
+
+    /**
+     * Gets the longest time from when a task was executed until its worker thread started it.
+     *
+     * @return The longest queue time in milliseconds.
+     */
+    public double getMaxQueueTime() {
+        return maxQueueTime;
+    }
+
+    /**
+     * Gets the mean time from when the worker thread started a task until it was done.
+     *
+     * @return The mean run time in milliseconds.
+     */
+    public double getMeanRunTime() {
+        return meanRunTime;
+    }
+
+    /**
+     * Gets the 99th percentile of the time from when the worker thread started a task until it was done.
+     *
+     * @return The 99th percentile of the run time in milliseconds.
+     */
+    public double getP99RunTime() {
+        return p99RunTime;
+    }
+
+    /**
+     * Gets the longest time from when the worker thread started a task until it was done.
+     *
+     * @return The longest run time in milliseconds.
+     */
+    public double getMaxRunTime() {
+        return maxRunTime;
+    }
+
+}
@@ -3,12 +3,15 @@ package org.peon.swing;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.swing.SwingWorker;
 
 import org.peon.Peon;
 import org.peon.PeonTask;
 import org.peon.PeonTaskState;
+import org.peon.ProgressThrottle;
+import org.peon.PropertyChangeCoalescer;
 
 /**
  * The peon is the object that makes sure the peon tasks are run in a separate worker thread and that
@@ -16,13 +19,33 @@ import org.peon.PeonTaskState;
  * creates a new peon for each task the master is told to execute and then tells that peon to work().
  *
  * This is an implementation of a peon for a Swing application. It extends SwingWorker for convenient
- * communication between a worker thread and the Swing Event Dispatch Thread.
+ * communication between a worker thread and the Swing Event Dispatch Thread. Unless an executor is provided
+ * the peon runs in the shared SwingWorker executor, which has at most 10 threads.
  */
 public class SwingPeon extends SwingWorker<PeonTask, PropertyChangeEvent> implements Peon, PropertyChangeListener {
 
     private PeonTask peonTask;
+    /**
+     * The executor that runs the peon or null if the peon runs in the shared SwingWorker executor.
+     */
+    private final Executor executor;
+    /**
+     * Limits the rate of relayed progress events or null if the rate is unlimited.
+     */
+    private volatile ProgressThrottle progressThrottle;
 
     public SwingPeon(PeonTask peonTask) {
+        this(peonTask, null);
+    }
+
+    /**
+     * Creates a peon that runs in the given executor instead of the shared SwingWorker executor.
+     *
+     * @param peonTask The task the peon will execute.
+     * @param executor The executor that will run the peon or null to use the shared SwingWorker executor.
+     */
+    public SwingPeon(PeonTask peonTask, Executor executor) {
+        this.executor = executor;
         setPeonTask(peonTask);
     }
 
@@ -47,12 +70,27 @@ public class SwingPeon extends SwingWorker<PeonTask, PropertyChangeEvent> implem
     }
 
     /**
-     * Tells the peon to start working on its task in a separate worker thread. It calls execute() to start
-     * the SwingWorker in a separate worker thread.
+     * Sets the maximum number of progress events per second that will be relayed from the task to the Swing
+     * Event Dispatch Thread. Progress events above the limit are dropped, except that the latest dropped progress
+     * event is always relayed before the next change of the task state.
+     *
+     * @param maxProgressEventRate The maximum number of progress events per second or 0 for no limit.
+     */
+    public void setMaxProgressEventRate(int maxProgressEventRate) {
+        this.progressThrottle = (maxProgressEventRate > 0 ? new ProgressThrottle(maxProgressEventRate) : null);
+    }
+
+    /**
+     * Tells the peon to start working on its task in a separate worker thread. It hands itself to the executor
+     * if one was provided and otherwise calls execute() to start the SwingWorker in the shared SwingWorker executor.
      */
     @Override
     public void work() {
-        execute();
+        if(executor != null) {
+            executor.execute(this);
+        } else {
+            execute();
+        }
     }
 
     /**
@@ -69,31 +107,47 @@ public class SwingPeon extends SwingWorker<PeonTask, PropertyChangeEvent> implem
 
     /**
      * Processes events fired by the task on the worker thread by relaying them to the peons own
-     * property change listeners on the Swing Event Dispatch Thread.
+     * property change listeners on the Swing Event Dispatch Thread. Changes of the same property are
+     * collapsed to the latest value, but changes of the task state are always relayed.
      *
      * @param events List of events fired by the task on the worker thread.
      */
     @Override
     protected void process(List<PropertyChangeEvent> events) {
-        for(PropertyChangeEvent event : events) {
+        for(PropertyChangeEvent event : PropertyChangeCoalescer.coalesce(events)) {
             firePropertyChange(event.getPropertyName(), event.getOldValue(), event.getNewValue());
         }
     }
 
     /**
      * Handles an event fired by the task on the worker thread by publish()ing it on the Swing Event Dispatch Thread.
-     * If the property is the task state and the new value is PeonTaskState.CANCELLED or PeonTaskState.FAILED, it
-     * will also call cancel(true) on itself to terminate the worker thread.
+     * If the property is the task state and the new value is PeonTaskState.CANCELLED, PeonTaskState.FAILED or
+     * PeonTaskState.TIMED_OUT, it will also call cancel(true) on itself to terminate the worker thread. Progress events
+     * above the maximum progress event rate are dropped.
      *
      * @param e The event that will be relayed from the task on the worker thread to the property change listeners
      *          on the Event Dispatch Thread.
      */
     @Override
     public void propertyChange(PropertyChangeEvent e) {
+        ProgressThrottle progressThrottle = this.progressThrottle;
+        if(progressThrottle != null) {
+            if(e.getPropertyName().equals("progress")) {
+                if(!progressThrottle.permit(e)) {
+                    return;
+                }
+            } else if(e.getPropertyName().equals("state")) {
+                PropertyChangeEvent heldBack = progressThrottle.takeHeldBack();
+                if(heldBack != null) {
+                    publish(heldBack);
+                }
+            }
+        }
         publish(e);
         if(e.getPropertyName().equals("state")) {
             if(e.getNewValue() == PeonTaskState.CANCELLED
-               || e.getNewValue() == PeonTaskState.FAILED) {
+               || e.getNewValue() == PeonTaskState.FAILED
+               || e.getNewValue() == PeonTaskState.TIMED_OUT) {
                 cancel(true);
             }
         }
@@ -1,6 +1,7 @@
 package org.peon.swing;
 
 import java.beans.PropertyChangeEvent;
+import java.util.concurrent.Executor;
 
 import javax.swing.SwingWorker;
 
@@ -9,22 +10,71 @@ import org.peon.Peon;
 import org.peon.PeonTask;
 import org.peon.event.PeonTaskEvent;
 import org.peon.event.PeonTaskEvent.EventId;
+import org.peon.executor.PeonExecutors;
 
 /**
  * The PeonMaster keeps track of the active peons and tasks and relay events from the
  * running tasks to listeners on the GUI event thread. All tasks should be run by calling
  * the execute() method in a PeonMaster.
  *
- * This class is not threadsafe and its methods should only be called from the GUI event thread.
+ * This class is threadsafe, but tasks should normally be executed from the Swing Event Dispatch Thread since the
+ * WAITING, STARTING and QUEUED events are dispatched on the thread that calls execute().
  *
  * It is recommended to use a singleton peon master in the application as each peon master
  * can only check for blocking tasks against the tasks it runs itself.
  *
  * This class provides an Swing implementation of the PeonMaster interface that should work for most situations
  * and that fires STARTED and DONE events when the SwingWorker peon state property changes to STARTED or DONE.
+ *
+ * By default the tasks run in the shared SwingWorker executor, which runs at most 10 tasks at the same time and
+ * queues the rest. Provide an executor to control the number of worker threads, the queue bound and the thread
+ * names. Events are delivered on the Swing Event Dispatch Thread either way.
  */
 public class SwingPeonMaster extends AbstractPeonMaster {
 
+    /**
+     * The executor that runs the peons or null if they run in the shared SwingWorker executor.
+     */
+    private final Executor executor;
+
+    /**
+     * Creates a peon master that runs the tasks in the shared SwingWorker executor.
+     */
+    public SwingPeonMaster() {
+        this(null);
+    }
+
+    /**
+     * Creates a peon master that runs the tasks in the given executor.
+     *
+     * @param executor The executor that will run the tasks or null to use the shared SwingWorker executor.
+     */
+    public SwingPeonMaster(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a peon master that runs the tasks in a new executor with a fixed number of named daemon threads.
+     * Tasks executed while queueCapacity tasks are already waiting for a free thread are rejected with a
+     * RejectedExecutionException.
+     *
+     * @param threads The number of worker threads.
+     * @param queueCapacity The maximum number of tasks waiting for a free worker thread.
+     * @param threadNamePrefix The prefix of the names of the worker threads.
+     */
+    public SwingPeonMaster(int threads, int queueCapacity, String threadNamePrefix) {
+        this(PeonExecutors.newWorkerExecutor(threadNamePrefix, threads, queueCapacity));
+    }
+
+    /**
+     * Gets the executor that runs the tasks.
+     *
+     * @return The executor that runs the tasks or null if they run in the shared SwingWorker executor.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
     /**
      * Swing peon masters create Swing peons to execute the tasks.
      *
@@ -32,7 +82,9 @@ public class SwingPeonMaster extends AbstractPeonMaster {
      */
     @Override
     protected Peon createPeon(PeonTask peonTask) {
-        return new SwingPeon(peonTask);
+        SwingPeon swingPeon = new SwingPeon(peonTask, executor);
+        swingPeon.setMaxProgressEventRate(getMaxProgressEventRate());
+        return swingPeon;
     }
 
     /**
@@ -50,8 +102,7 @@ public class SwingPeonMaster extends AbstractPeonMaster {
             if(e.getNewValue() == SwingWorker.StateValue.STARTED) {
                 firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.STARTED));
             } else if(e.getNewValue() == SwingWorker.StateValue.DONE) {
-                removePeonTask(peonTask);
-                firePeonTaskEvent(new PeonTaskEvent(peonTask, EventId.DONE));
+                peonTaskDone(peonTask);
             }
         }
     }
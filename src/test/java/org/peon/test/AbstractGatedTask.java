@@ -0,0 +1,39 @@
+package org.peon.test;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.peon.AbstractPeonTask;
+
+/**
+ * A task that waits at a gate until the test opens it, so that a test can decide exactly when the task is done.
+ * The result of the task is its worker thread, and the task cancels itself if it is interrupted at the gate.
+ */
+public abstract class AbstractGatedTask extends AbstractPeonTask<Thread> {
+
+    private final CountDownLatch gate;
+
+    protected AbstractGatedTask() {
+        this(new CountDownLatch(1));
+    }
+
+    /**
+     * @param gate The gate to wait at, which may be shared with other tasks to open them all at once.
+     */
+    protected AbstractGatedTask(CountDownLatch gate) {
+        this.gate = gate;
+    }
+
+    public void open() {
+        gate.countDown();
+    }
+
+    @Override
+    public void doExecute() {
+        setResult(Thread.currentThread());
+        try {
+            gate.await();
+        } catch(InterruptedException e) {
+            cancel();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.peon.test;
+
+import org.peon.CheckpointingPeonTask;
+import org.peon.checkpoint.PeonCheckpointStore;
+
+public class CheckpointTask extends CheckpointingPeonTask<Thread> {
+
+    private final int failAt;
+    private int processed;
+
+    public CheckpointTask(PeonCheckpointStore checkpointStore, String checkpointKey, int total, int failAt) {
+        super(checkpointStore, checkpointKey);
+        this.failAt = failAt;
+        setTotal(total);
+        setName("Checkpoint Task");
+        setDescription("A long haul that keeps track of how far it has come.");
+    }
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    @Override
+    protected void doExecute(String checkpointState) {
+        setResult(Thread.currentThread());
+        int next = (checkpointState != null ? Integer.parseInt(checkpointState) : 0);
+        for(int i = next; i < getTotal(); i++) {
+            if(i == failAt) {
+                throw new IllegalStateException("Failed at " + i);
+            }
+            processed++;
+            progress();
+            if(isCheckpointDue()) {
+                checkpoint(String.valueOf(i + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.peon.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.peon.DeduplicatedPeonTask;
+
+public class DeduplicatedTask extends AbstractGatedTask implements DeduplicatedPeonTask<Thread> {
+
+    private volatile String key;
+    private final AtomicInteger executions;
+
+    public DeduplicatedTask(String key, CountDownLatch gate, AtomicInteger executions) {
+        super(gate);
+        this.key = key;
+        this.executions = executions;
+        setName("Deduplicated Task");
+        setDescription("A lookup that only needs to be done once no matter how many ask for it.");
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    @Override
+    public Object getDeduplicationKey() {
+        return key;
+    }
+
+    @Override
+    public void doExecute() {
+        executions.incrementAndGet();
+        super.doExecute();
+    }
+}
@@ -0,0 +1,31 @@
+package org.peon.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.peon.AbstractPeonTask;
+import org.peon.DependentPeonTask;
+import org.peon.PeonTask;
+
+public class DependentTask extends AbstractPeonTask<List<Object>> implements DependentPeonTask<List<Object>> {
+
+    private final List<Object> prerequisiteResults = Collections.synchronizedList(new ArrayList<Object>());
+
+    public DependentTask() {
+        setName("Dependent Task");
+        setDescription("A task that collects the results of the tasks it depends on.");
+    }
+
+    @Override
+    public void prerequisiteFinished(PeonTask<?> prerequisite) {
+        prerequisiteResults.add(prerequisite.getResult());
+    }
+
+    @Override
+    public void doExecute() {
+        List<Object> result = new ArrayList<Object>(prerequisiteResults);
+        result.add(Thread.currentThread());
+        setResult(result);
+    }
+}
@@ -0,0 +1,48 @@
+package org.peon.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.peon.RecursivePeonTask;
+
+public class GatedRecursiveTask extends RecursivePeonTask<Thread> {
+
+    private final CountDownLatch computing = new CountDownLatch(1);
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    public GatedRecursiveTask(ForkJoinPool pool) {
+        super(pool);
+        setName("Gated Recursive Task");
+        setDescription("A task whose only subtask waits at the gate, whether the task has been cancelled or not.");
+    }
+
+    public boolean awaitComputing(long timeout, TimeUnit unit) throws InterruptedException {
+        return computing.await(timeout, unit);
+    }
+
+    public void open() {
+        gate.countDown();
+    }
+
+    @Override
+    protected Subtask<Thread> createRootSubtask() {
+        return new GatedSubtask();
+    }
+
+    private class GatedSubtask extends Subtask<Thread> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Thread doCompute() {
+            computing.countDown();
+            try {
+                gate.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Thread.currentThread();
+        }
+    }
+}
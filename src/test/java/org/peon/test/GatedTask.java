@@ -0,0 +1,14 @@
+package org.peon.test;
+
+import org.peon.annotation.Category;
+import org.peon.annotation.ClassBlocking;
+
+@ClassBlocking
+@Category("Test")
+public class GatedTask extends AbstractGatedTask {
+
+    public GatedTask() {
+        setName("Gated Task");
+        setDescription("A patient task that waits at the gate until someone opens it.");
+    }
+}
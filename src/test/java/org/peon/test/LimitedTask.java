@@ -0,0 +1,14 @@
+package org.peon.test;
+
+import org.peon.annotation.Category;
+import org.peon.annotation.MaxConcurrent;
+
+@MaxConcurrent(2)
+@Category("Test")
+public class LimitedTask extends AbstractGatedTask {
+
+    public LimitedTask() {
+        setName("Limited Task");
+        setDescription("A task that waits at the gate with at most one other of its kind.");
+    }
+}
@@ -0,0 +1,30 @@
+package org.peon.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.peon.AbstractPeonTask;
+import org.peon.CacheablePeonTask;
+
+public class LookupTask extends AbstractPeonTask<Thread> implements CacheablePeonTask<Thread> {
+
+    private final String key;
+    private final AtomicInteger executions;
+
+    public LookupTask(String key, AtomicInteger executions) {
+        this.key = key;
+        this.executions = executions;
+        setName("Lookup Task");
+        setDescription("A lookup whose answer does not change, however often it is asked.");
+    }
+
+    @Override
+    public Object getCacheKey() {
+        return key;
+    }
+
+    @Override
+    public void doExecute() {
+        executions.incrementAndGet();
+        setResult(Thread.currentThread());
+    }
+}
@@ -0,0 +1,22 @@
+package org.peon.test;
+
+import org.peon.AbstractPeonTask;
+
+public class ProgressTask extends AbstractPeonTask<Thread> {
+
+    public static final int TOTAL = 1000000;
+
+    public ProgressTask() {
+        setName("Progress Task");
+        setDescription("A restless task that reports every tiny step it takes.");
+    }
+
+    @Override
+    public void doExecute() {
+        setResult(Thread.currentThread());
+        setTotal(TOTAL);
+        for(int i = 0; i < TOTAL; i++) {
+            progress();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.peon.test;
+
+import org.peon.RestartablePeonTask;
+
+public class RestartableTask extends AbstractGatedTask implements RestartablePeonTask<Thread> {
+
+    private final String restartData;
+
+    public RestartableTask(String restartData) {
+        this.restartData = restartData;
+        setName("Restartable Task");
+        setDescription("A task that picks up where the last run of the application left off.");
+    }
+
+    @Override
+    public String getRestartData() {
+        return restartData;
+    }
+}
@@ -0,0 +1,30 @@
+package org.peon.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.peon.AbstractPeonTask;
+
+public class SpinningTask extends AbstractPeonTask<Thread> {
+
+    private final CountDownLatch exited = new CountDownLatch(1);
+
+    public SpinningTask() {
+        setName("Spinning Task");
+        setDescription("A task that pays no attention to being cancelled and only stops when it is interrupted.");
+    }
+
+    public boolean awaitExit(long timeout, TimeUnit unit) throws InterruptedException {
+        return exited.await(timeout, unit);
+    }
+
+    @Override
+    public void doExecute() {
+        setResult(Thread.currentThread());
+        try {
+            while(!Thread.currentThread().isInterrupted());
+        } finally {
+            exited.countDown();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.peon.test;
+
+import org.peon.AbstractPeonTask;
+
+public class SteadyTask extends AbstractPeonTask<Thread> {
+
+    public static final int TOTAL = 100;
+
+    public SteadyTask() {
+        setName("Steady Task");
+        setDescription("A task that takes one small step every ten milliseconds, never faster and never slower.");
+    }
+
+    @Override
+    public void doExecute() {
+        setResult(Thread.currentThread());
+        setTotal(TOTAL);
+        for(int i = 0; i < TOTAL && !isCancelled(); i++) {
+            try {
+                Thread.sleep(10);
+            } catch(InterruptedException e) {
+                return;
+            }
+            progress();
+        }
+    }
+}
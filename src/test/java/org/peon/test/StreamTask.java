@@ -0,0 +1,27 @@
+package org.peon.test;
+
+import org.peon.StreamingPeonTask;
+
+public class StreamTask extends StreamingPeonTask<Integer, Integer> {
+
+    public static final int BUFFER_CAPACITY = 16;
+
+    private final int rows;
+
+    public StreamTask(int rows) {
+        super(BUFFER_CAPACITY);
+        this.rows = rows;
+        setName("Stream Task");
+        setDescription("A task that hands out its rows one at a time as soon as it has them.");
+    }
+
+    @Override
+    public void doExecute() {
+        setTotal(rows);
+        for(int i = 0; i < rows; i++) {
+            publish(i);
+            progress();
+        }
+        setResult(rows);
+    }
+}
@@ -0,0 +1,55 @@
+package org.peon.test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.peon.RecursivePeonTask;
+
+public class SumTask extends RecursivePeonTask<Long> {
+
+    private static final long THRESHOLD = 1000;
+
+    private final long n;
+
+    public SumTask(long n, ForkJoinPool pool) {
+        super(pool);
+        this.n = n;
+        setName("Sum Task");
+        setDescription("Adds up the numbers from 1 to n by splitting them in ranges and adding the ranges in parallel.");
+        setTotal(n);
+    }
+
+    @Override
+    protected Subtask<Long> createRootSubtask() {
+        return new RangeSum(1, n + 1);
+    }
+
+    private class RangeSum extends Subtask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+
+        public RangeSum(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long doCompute() {
+            if(to - from <= THRESHOLD) {
+                long sum = 0;
+                for(long i = from; i < to; i++) {
+                    sum += i;
+                }
+                progress(to - from);
+                return sum;
+            }
+            long middle = (from + to) / 2;
+            RangeSum left = new RangeSum(from, middle);
+            RangeSum right = new RangeSum(middle, to);
+            left.fork();
+            return right.compute() + left.join();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.peon.test;
+
+import org.peon.AbstractPeonTask;
+import org.peon.annotation.Timeout;
+
+@Timeout(100)
+public class TimeoutTask extends AbstractPeonTask<Thread> {
+
+    public TimeoutTask() {
+        setName("Timeout Task");
+        setDescription("A task that takes a nap that is far longer than it is allowed to take.");
+    }
+
+    @Override
+    public void doExecute() {
+        setResult(Thread.currentThread());
+        try {
+            Thread.sleep(60000);
+        } catch(InterruptedException e) {
+            // Timed out.
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.peon.test;
+
+import org.peon.annotation.MaxConcurrent;
+
+@MaxConcurrent(0)
+public class UnlimitedTask extends SuccessTask {
+
+    public UnlimitedTask() {
+        setName("Unlimited Task");
+        setDescription("A task that asks for a limit of nothing, which is no limit at all.");
+    }
+
+}
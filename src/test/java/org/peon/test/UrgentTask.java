@@ -0,0 +1,13 @@
+package org.peon.test;
+
+import org.peon.annotation.Priority;
+
+@Priority(5)
+public class UrgentTask extends SuccessTask {
+
+    public UrgentTask() {
+        setName("Urgent Task");
+        setDescription("A task that cuts in line whenever it gets the chance.");
+    }
+
+}
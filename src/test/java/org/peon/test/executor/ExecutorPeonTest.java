@@ -0,0 +1,1222 @@
+package org.peon.test.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.peon.PeonMaster;
+import org.peon.PeonTask;
+import org.peon.PeonTaskConcurrencyException;
+import org.peon.PeonTaskFailedException;
+import org.peon.PeonTaskGraph;
+import org.peon.PeonTaskState;
+import org.peon.PeonTaskTimings;
+import org.peon.cache.LruPeonResultCache;
+import org.peon.checkpoint.FileCheckpointStore;
+import org.peon.event.PeonTaskBatchListener;
+import org.peon.event.PeonTaskEvent;
+import org.peon.event.PeonTaskEvent.EventId;
+import org.peon.event.PeonTaskListener;
+import org.peon.journal.JournaledTask;
+import org.peon.journal.PeonTaskJournal;
+import org.peon.journal.ReflectivePeonTaskRestorer;
+import org.peon.executor.ExecutorPeonMaster;
+import org.peon.executor.VirtualThreadPeonMaster;
+import org.peon.metrics.PeonMetrics;
+import org.peon.test.CancelTask;
+import org.peon.test.CategoryBlockingTask;
+import org.peon.test.CheckpointTask;
+import org.peon.test.ClassBlockingTask;
+import org.peon.test.DeduplicatedTask;
+import org.peon.test.DependentTask;
+import org.peon.test.EndlessTask;
+import org.peon.test.ErrorTask;
+import org.peon.test.ExceptionTask;
+import org.peon.test.GatedRecursiveTask;
+import org.peon.test.GatedTask;
+import org.peon.test.LookupTask;
+import org.peon.test.LimitedTask;
+import org.peon.test.RestartableTask;
+import org.peon.test.SpinningTask;
+import org.peon.test.SteadyTask;
+import org.peon.test.StreamTask;
+import org.peon.test.SuccessTask;
+import org.peon.test.SumTask;
+import org.peon.test.TimeoutTask;
+import org.peon.test.UnlimitedTask;
+import org.peon.test.UrgentTask;
+
+@RunWith(JUnit4.class)
+public class ExecutorPeonTest implements PeonTaskListener {
+
+    private ExecutorPeonMaster peonMaster;
+    private CountDownLatch done;
+    private Thread workerThread;
+    private Thread callbackThread;
+    private List<EventId> eventIds;
+
+    @Before
+    public void setUp() {
+        peonMaster = new ExecutorPeonMaster(2);
+        peonMaster.addPeonTaskListener(this);
+        done = new CountDownLatch(1);
+        workerThread = null;
+        callbackThread = null;
+        eventIds = Collections.synchronizedList(new ArrayList<EventId>());
+    }
+
+    @After
+    public void tearDown() {
+        peonMaster.shutdown();
+    }
+
+    @Test
+    public void success() throws InterruptedException {
+        PeonTask successTask = new SuccessTask();
+        peonMaster.execute(successTask);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // The task should have run on a worker thread and the events should have been delivered on a
+        // separate callback thread, neither of which is the thread that executed the task.
+        assertTrue(successTask.getState() == PeonTaskState.FINISHED);
+        assertNotNull(workerThread);
+        assertNotNull(callbackThread);
+        assertFalse(workerThread == Thread.currentThread());
+        assertFalse(callbackThread == Thread.currentThread());
+        assertFalse(workerThread == callbackThread);
+        assertTrue(workerThread.getName().startsWith("peon-worker-"));
+        assertTrue(callbackThread.getName().startsWith("peon-callback-"));
+        assertEquals(EventId.STARTING, eventIds.get(0));
+        assertEquals(EventId.DONE, eventIds.get(eventIds.size() - 1));
+        assertTrue(eventIds.indexOf(EventId.STARTED) < eventIds.indexOf(EventId.FINISHED));
+        assertTrue(peonMaster.getCurrentTasks().isEmpty());
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        PeonTask cancelTask = new CancelTask();
+        peonMaster.execute(cancelTask);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(cancelTask.getState() == PeonTaskState.CANCELLED);
+        assertTrue(eventIds.contains(EventId.CANCELLED));
+        assertNotNull(workerThread);
+        assertNotNull(callbackThread);
+    }
+
+    @Test
+    public void cancelInterruptsWorker() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        peonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getId() == EventId.STARTED) {
+                    started.countDown();
+                }
+            }
+        });
+        SpinningTask spinningTask = new SpinningTask();
+        peonMaster.execute(spinningTask);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        spinningTask.cancel();
+
+        // The spinning task ignores its cancellation, so only interrupting the worker thread makes its loop exit.
+        assertTrue(spinningTask.awaitExit(5, TimeUnit.SECONDS));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(spinningTask.getState() == PeonTaskState.CANCELLED);
+        assertTrue(spinningTask.getCancellationToken().isCancellationRequested());
+        assertNull(spinningTask.getException());
+    }
+
+    @Test
+    public void error() throws InterruptedException {
+        PeonTask errorTask = new ErrorTask();
+        peonMaster.execute(errorTask);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(errorTask.getState() == PeonTaskState.FAILED);
+        assertNotNull(errorTask.getError());
+        assertTrue(eventIds.contains(EventId.FAILED));
+    }
+
+    @Test
+    public void exception() throws InterruptedException {
+        PeonTask exceptionTask = new ExceptionTask();
+        peonMaster.execute(exceptionTask);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(exceptionTask.getState() == PeonTaskState.EXCEPTION);
+        assertNotNull(exceptionTask.getException());
+        assertTrue(eventIds.contains(EventId.EXCEPTION));
+    }
+
+    @Test
+    public void timeout() throws InterruptedException {
+        TimeoutTask timeoutTask = new TimeoutTask();
+        peonMaster.execute(timeoutTask);
+
+        // The task sleeps for a minute but its @Timeout annotation only allows it a tenth of a second.
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(timeoutTask.getState() == PeonTaskState.TIMED_OUT);
+        assertTrue(eventIds.indexOf(EventId.TIMED_OUT) < eventIds.indexOf(EventId.DONE));
+        assertTrue(peonMaster.getCurrentTasks().isEmpty());
+    }
+
+    @Test
+    public void submissionTimeout() throws InterruptedException {
+        GatedTask gatedTask = new GatedTask();
+        peonMaster.execute(gatedTask, 100, TimeUnit.MILLISECONDS);
+
+        // The gate is never opened, so the task should time out and release its class blocking slot.
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(gatedTask.getState() == PeonTaskState.TIMED_OUT);
+        assertTrue(eventIds.contains(EventId.TIMED_OUT));
+        assertNull(peonMaster.getBlockingTaskFor(GatedTask.class));
+    }
+
+    @Test
+    public void timeoutStartsWithTask() throws InterruptedException {
+        ExecutorPeonMaster singlePeonMaster = new ExecutorPeonMaster(1);
+        singlePeonMaster.setMaxWorkingPeons(1);
+        singlePeonMaster.addPeonTaskListener(this);
+        final SuccessTask queuedTask = new SuccessTask();
+        final CountDownLatch queuedTaskStarted = new CountDownLatch(1);
+        singlePeonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getSource() == queuedTask && e.getId() == EventId.STARTED) {
+                    queuedTaskStarted.countDown();
+                }
+            }
+        });
+        GatedTask gatedTask = new GatedTask();
+        singlePeonMaster.execute(gatedTask);
+        singlePeonMaster.execute(queuedTask, 50, TimeUnit.MILLISECONDS);
+
+        // The queued task spends longer than its timeout in the run queue, which does not count against it.
+        assertFalse(queuedTaskStarted.await(200, TimeUnit.MILLISECONDS));
+        done = new CountDownLatch(2);
+        gatedTask.open();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(queuedTask.getState() == PeonTaskState.FINISHED);
+        singlePeonMaster.shutdown();
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        PeonMetrics metrics = new PeonMetrics();
+        peonMaster.setMetricsSink(metrics);
+        done = new CountDownLatch(2);
+        peonMaster.execute(new SuccessTask());
+        peonMaster.execute(new ErrorTask());
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, metrics.getTotal().getSubmitted());
+        assertEquals(2, metrics.getTotal().getStarted());
+        assertEquals(0, metrics.getTotal().getRunning());
+        assertEquals(1, metrics.getTotal().getFinished());
+        assertEquals(1, metrics.getTotal().getFailed());
+        assertEquals(1, metrics.getClassMetrics(SuccessTask.class).getFinished());
+        assertEquals(1, metrics.getCategoryMetrics("Test").getSubmitted());
+        assertEquals(1, metrics.getCategoryMetrics("").getFailed());
+
+        // The same measurements should be readable through JMX.
+        ObjectName objectName = metrics.register("executorPeonTest");
+        try {
+            CompositeData total = (CompositeData)ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Total");
+            assertEquals(1L, total.get("finished"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+    }
+
+    @Test
+    public void timings() throws InterruptedException {
+        final CountDownLatch underway = new CountDownLatch(1);
+        peonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getId() == EventId.PROGRESSED && e.getSource().getProgress() >= 40) {
+                    underway.countDown();
+                }
+            }
+        });
+        SteadyTask steadyTask = new SteadyTask();
+        assertEquals(-1, steadyTask.getStartTime());
+        assertEquals(-1, steadyTask.getEstimatedTimeRemaining());
+        long before = System.currentTimeMillis();
+        peonMaster.execute(steadyTask);
+
+        assertTrue(underway.await(5, TimeUnit.SECONDS));
+
+        // A steady task well under way should still have some of its second left.
+        long estimate = steadyTask.getEstimatedTimeRemaining();
+        assertTrue(estimate > 0 && estimate < 5000);
+        assertTrue(steadyTask.getTimeElapsed() >= 400);
+        assertEquals(-1, steadyTask.getEndTime());
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        PeonTaskTimings timings = steadyTask.getTimings();
+        assertTrue(timings.getQueuedTime(TimeUnit.NANOSECONDS) >= 0);
+        assertTrue(timings.getRunningTime(TimeUnit.MILLISECONDS) >= 1000);
+        assertTrue(timings.getDeliveryTime(TimeUnit.NANOSECONDS) >= 0);
+        assertTrue(timings.getTotalTime(TimeUnit.NANOSECONDS) >= timings.getRunningTime(TimeUnit.NANOSECONDS));
+        assertTrue(steadyTask.getStartTime() >= before);
+        assertEquals(steadyTask.getStartTime() + steadyTask.getTimeElapsed(), steadyTask.getEndTime());
+        assertEquals(-1, steadyTask.getEstimatedTimeRemaining());
+    }
+
+    @Test
+    public void virtualThreads() throws InterruptedException {
+        VirtualThreadPeonMaster virtualThreadPeonMaster = new VirtualThreadPeonMaster();
+        virtualThreadPeonMaster.addPeonTaskListener(this);
+        PeonTask successTask = new SuccessTask();
+        virtualThreadPeonMaster.execute(successTask);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(successTask.getState() == PeonTaskState.FINISHED);
+        assertTrue(workerThread.getName().startsWith("peon-virtual-"));
+        assertTrue(callbackThread.getName().startsWith("peon-callback-"));
+        virtualThreadPeonMaster.shutdown();
+    }
+
+    @Test
+    public void blockingTaskFor() {
+        CategoryBlockingTask categoryBlockingTask = new CategoryBlockingTask();
+        peonMaster.execute(categoryBlockingTask);
+
+        assertEquals(categoryBlockingTask, peonMaster.getBlockingTaskFor(ClassBlockingTask.class));
+        assertNull(peonMaster.getBlockingTaskFor(EndlessTask.class));
+
+        categoryBlockingTask.cancel();
+    }
+
+    @Test(expected = PeonTaskConcurrencyException.class)
+    public void classBlock() {
+        peonMaster.execute(new ClassBlockingTask());
+        peonMaster.execute(new ClassBlockingTask());
+    }
+
+    @Test
+    public void rejectedTimings() throws InterruptedException {
+        GatedTask firstTask = new GatedTask();
+        GatedTask rejectedTask = new GatedTask();
+        peonMaster.execute(firstTask);
+        try {
+            peonMaster.execute(rejectedTask);
+            fail("The second gated task should have been rejected.");
+        } catch(PeonTaskConcurrencyException e) {
+            // The rejected task was never submitted, so it has no timings.
+            assertEquals(-1, rejectedTask.getTimings().getTotalTime(TimeUnit.NANOSECONDS));
+        }
+        firstTask.open();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queueBlockedTasks() throws InterruptedException {
+        peonMaster.setQueueBlockedTasks(true);
+        done = new CountDownLatch(2);
+        GatedTask firstTask = new GatedTask();
+        GatedTask secondTask = new GatedTask();
+        peonMaster.execute(firstTask);
+        peonMaster.execute(secondTask);
+
+        // The second task is blocked by the first and should wait for it instead of being rejected.
+        assertEquals(Collections.singletonList(secondTask), peonMaster.getWaitingTasks());
+        assertTrue(eventIds.contains(EventId.WAITING));
+        assertTrue(secondTask.getState() == PeonTaskState.PENDING);
+
+        firstTask.open();
+        secondTask.open();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(firstTask.getState() == PeonTaskState.FINISHED);
+        assertTrue(secondTask.getState() == PeonTaskState.FINISHED);
+        assertTrue(peonMaster.getWaitingTasks().isEmpty());
+        assertEquals(1, peonMaster.getWaitedTaskCount());
+    }
+
+    @Test
+    public void cancelWaitingTask() throws InterruptedException {
+        peonMaster.setQueueBlockedTasks(true);
+        GatedTask gatedTask = new GatedTask();
+        CategoryBlockingTask waitingTask = new CategoryBlockingTask();
+        SuccessTask laterTask = new SuccessTask();
+        peonMaster.execute(gatedTask);
+        CompletableFuture<Thread> waitingFuture = peonMaster.submit(waitingTask);
+        peonMaster.execute(laterTask);
+        assertEquals(Arrays.<PeonTask>asList(waitingTask, laterTask), peonMaster.getWaitingTasks());
+
+        // The cancelled task leaves the wait queue while the gated task still runs and stops holding back the task behind it.
+        done = new CountDownLatch(2);
+        waitingTask.cancel();
+
+        assertTrue(waitingFuture.isCancelled());
+        assertTrue(eventIds.contains(EventId.CANCELLED));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(laterTask.getState() == PeonTaskState.FINISHED);
+        assertTrue(peonMaster.getWaitingTasks().isEmpty());
+        assertTrue(peonMaster.getCurrentTasks().contains(gatedTask));
+        gatedTask.open();
+    }
+
+    @Test
+    public void maxConcurrent() throws InterruptedException {
+        LimitedTask firstTask = new LimitedTask();
+        LimitedTask secondTask = new LimitedTask();
+        LimitedTask thirdTask = new LimitedTask();
+        peonMaster.execute(firstTask);
+        assertNull(peonMaster.getBlockingTaskFor(LimitedTask.class));
+        peonMaster.execute(secondTask);
+
+        // Two limited tasks fill the limit, but other tasks in the same category may still run.
+        assertNotNull(peonMaster.getBlockingTaskFor(LimitedTask.class));
+        assertNull(peonMaster.getBlockingTaskFor(SuccessTask.class));
+        try {
+            peonMaster.execute(thirdTask);
+            fail("The third limited task should have been rejected.");
+        } catch(PeonTaskConcurrencyException e) {
+            assertTrue(e.getBlockingTask() == firstTask || e.getBlockingTask() == secondTask);
+        }
+
+        // With queueing the third task waits for a free slot.
+        peonMaster.setQueueBlockedTasks(true);
+        done = new CountDownLatch(3);
+        peonMaster.execute(thirdTask);
+        assertEquals(Collections.singletonList(thirdTask), peonMaster.getWaitingTasks());
+
+        firstTask.open();
+        secondTask.open();
+        thirdTask.open();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(thirdTask.getState() == PeonTaskState.FINISHED);
+        assertTrue(peonMaster.getWaitingTasks().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxConcurrentInvalid() {
+        peonMaster.execute(new UnlimitedTask());
+    }
+
+    @Test
+    public void categoryExecutor() throws InterruptedException {
+        ExecutorPeonMaster bulkheadPeonMaster = new ExecutorPeonMaster(1);
+        bulkheadPeonMaster.setMaxWorkingPeons(1);
+        bulkheadPeonMaster.addPeonTaskListener(this);
+        bulkheadPeonMaster.createCategoryExecutor("Test", 1, 1);
+        GatedTask gatedTask = new GatedTask();
+        LimitedTask limitedTask = new LimitedTask();
+        bulkheadPeonMaster.execute(gatedTask);
+        bulkheadPeonMaster.execute(limitedTask);
+
+        // The single thread and queue slot of the bulkhead are taken, so another task in the category is rejected.
+        try {
+            bulkheadPeonMaster.execute(new LimitedTask());
+            fail("The bulkhead should have rejected the task.");
+        } catch(RejectedExecutionException e) {
+            // The bulkhead is full.
+        }
+
+        // A task in another category still runs on the shared worker thread.
+        PeonTask errorTask = new ErrorTask();
+        bulkheadPeonMaster.execute(errorTask);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(errorTask.getState() == PeonTaskState.FAILED);
+        assertTrue(workerThread.getName().startsWith("peon-worker-"));
+        assertEquals(0, bulkheadPeonMaster.getRunQueueLength());
+
+        done = new CountDownLatch(2);
+        gatedTask.open();
+        limitedTask.open();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(workerThread.getName().startsWith("peon-Test-"));
+        bulkheadPeonMaster.shutdown();
+    }
+
+    @Test
+    public void shutdownDeliversQueuedTasks() throws InterruptedException {
+        ExecutorPeonMaster singlePeonMaster = new ExecutorPeonMaster(1);
+        singlePeonMaster.addPeonTaskListener(this);
+        done = new CountDownLatch(2);
+        GatedTask gatedTask = new GatedTask();
+        SuccessTask queuedTask = new SuccessTask();
+        singlePeonMaster.execute(gatedTask);
+        singlePeonMaster.execute(queuedTask);
+
+        // The queued task still runs and reaches DONE after the peon master has been shut down.
+        singlePeonMaster.shutdown();
+        gatedTask.open();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(queuedTask.getState() == PeonTaskState.FINISHED);
+    }
+
+    @Test
+    public void priority() throws InterruptedException {
+        ExecutorPeonMaster singlePeonMaster = new ExecutorPeonMaster(1);
+        singlePeonMaster.setMaxWorkingPeons(1);
+        final List<PeonTask> startedTasks = Collections.synchronizedList(new ArrayList<PeonTask>());
+        done = new CountDownLatch(4);
+        singlePeonMaster.addPeonTaskListener(this);
+        singlePeonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getId() == EventId.STARTED) {
+                    startedTasks.add(e.getSource());
+                }
+            }
+        });
+        GatedTask gatedTask = new GatedTask();
+        SuccessTask lowTask = new SuccessTask();
+        SuccessTask highTask = new SuccessTask();
+        highTask.setPriority(10);
+        UrgentTask urgentTask = new UrgentTask();
+        singlePeonMaster.execute(gatedTask);
+        singlePeonMaster.execute(lowTask);
+        singlePeonMaster.execute(urgentTask);
+        singlePeonMaster.execute(highTask);
+
+        // The gated task occupies the only worker, so the other tasks must wait in the run queue.
+        assertEquals(3, singlePeonMaster.getRunQueueLength());
+        gatedTask.open();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.<PeonTask>asList(gatedTask, highTask, urgentTask, lowTask), startedTasks);
+        singlePeonMaster.shutdown();
+    }
+
+    @Test
+    public void concurrentExecute() throws InterruptedException {
+        final int threads = 8;
+        final int tasksPerThread = 250;
+        done = new CountDownLatch(threads * tasksPerThread + 1);
+        final GatedTask gatedTask = new GatedTask();
+        final AtomicInteger blocked = new AtomicInteger();
+        final CountDownLatch go = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<Thread>();
+        for(int i = 0; i < threads; i++) {
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                    for(int j = 0; j < tasksPerThread; j++) {
+                        peonMaster.execute(new SuccessTask());
+                    }
+                    try {
+                        peonMaster.execute(gatedTask);
+                    } catch(PeonTaskConcurrencyException e) {
+                        blocked.incrementAndGet();
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        go.countDown();
+        for(Thread producer : producers) {
+            producer.join();
+        }
+
+        // Only one of the producers may have been allowed to start the class blocking task.
+        assertEquals(threads - 1, blocked.get());
+        gatedTask.open();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(peonMaster.getCurrentTasks().isEmpty());
+    }
+
+    @Test
+    public void executeAll() throws InterruptedException {
+        final int taskCount = 500;
+        done = new CountDownLatch(taskCount);
+        final List<Integer> startingBatchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        peonMaster.addPeonTaskListener(new PeonTaskBatchListener() {
+            @Override
+            public void peonTaskEvents(List<PeonTaskEvent> events) {
+                if(events.get(0).getId() == EventId.STARTING) {
+                    startingBatchSizes.add(events.size());
+                }
+            }
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+            }
+        });
+        List<PeonTask> tasks = new ArrayList<PeonTask>();
+        for(int i = 0; i < taskCount; i++) {
+            tasks.add(new SuccessTask());
+        }
+        peonMaster.executeAll(tasks);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // All tasks should have been started in a single batch.
+        assertEquals(Collections.singletonList(taskCount), startingBatchSizes);
+        for(PeonTask task : tasks) {
+            assertTrue(task.getState() == PeonTaskState.FINISHED);
+        }
+    }
+
+    @Test
+    public void executeAllBlocked() {
+        List<PeonTask> tasks = Arrays.<PeonTask>asList(new SuccessTask(), new ClassBlockingTask(), new ClassBlockingTask());
+        try {
+            peonMaster.executeAll(tasks);
+            fail();
+        } catch(PeonTaskConcurrencyException e) {
+            // The second class blocking task is blocked by the first, so none of the tasks should have been executed.
+            assertTrue(peonMaster.getCurrentTasks().isEmpty());
+            assertTrue(eventIds.isEmpty());
+            for(PeonTask task : tasks) {
+                assertEquals(-1, task.getTimings().getTotalTime(TimeUnit.NANOSECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void executeAllCachedAndDeduplicated() throws InterruptedException {
+        peonMaster.setResultCache(new LruPeonResultCache(10));
+        AtomicInteger lookups = new AtomicInteger();
+        peonMaster.execute(new LookupTask("a", lookups));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        LookupTask cachedTask = new LookupTask("a", lookups);
+        DeduplicatedTask firstTask = new DeduplicatedTask("lookup", gate, executions);
+        DeduplicatedTask duplicateTask = new DeduplicatedTask("lookup", gate, executions);
+        done = new CountDownLatch(3);
+        peonMaster.executeAll(Arrays.<PeonTask>asList(cachedTask, firstTask, duplicateTask));
+
+        // The cached task is finished at once and the duplicate rides along with the first task.
+        assertTrue(cachedTask.getState() == PeonTaskState.FINISHED);
+        assertEquals(Collections.<PeonTask>singleton(firstTask), peonMaster.getCurrentTasks());
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, lookups.get());
+        assertEquals(1, executions.get());
+        assertTrue(duplicateTask.getResult() == firstTask.getResult());
+    }
+
+    @Test
+    public void submit() throws Exception {
+        CompletableFuture<Thread> future = peonMaster.submit(new SuccessTask());
+
+        // The result of the task should be available through the future without any listener.
+        Thread thread = future.get(5, TimeUnit.SECONDS);
+        assertTrue(thread.getName().startsWith("peon-worker-"));
+        assertTrue(eventIds.contains(EventId.DONE));
+    }
+
+    @Test
+    public void submitError() throws Exception {
+        ErrorTask errorTask = new ErrorTask();
+        CompletableFuture<Thread> future = peonMaster.submit(errorTask);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof PeonTaskFailedException);
+            assertEquals(errorTask.getError(), ((PeonTaskFailedException)e.getCause()).getError());
+        }
+    }
+
+    @Test
+    public void submitCancel() throws InterruptedException {
+        GatedTask gatedTask = new GatedTask();
+        CompletableFuture<Thread> future = peonMaster.submit(gatedTask);
+
+        // Cancelling the future should cancel the task and release its worker thread.
+        assertTrue(future.cancel(true));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(gatedTask.getState() == PeonTaskState.CANCELLED);
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void defaultSubmit() throws Exception {
+        PeonMaster minimalPeonMaster = new MinimalPeonMaster(peonMaster);
+        CompletableFuture<Thread> future = minimalPeonMaster.submit(new SuccessTask());
+
+        // A peon master that does not implement submit() should still complete the future when the task is done.
+        Thread thread = future.get(5, TimeUnit.SECONDS);
+        assertTrue(thread.getName().startsWith("peon-worker-"));
+    }
+
+    @Test
+    public void defaultExecuteAll() throws InterruptedException {
+        PeonMaster minimalPeonMaster = new MinimalPeonMaster(peonMaster);
+        done = new CountDownLatch(2);
+        List<PeonTask> tasks = Arrays.<PeonTask>asList(new SuccessTask(), new ErrorTask());
+        minimalPeonMaster.executeAll(tasks);
+
+        // A peon master that does not implement executeAll() should execute the tasks one at a time.
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(tasks.get(0).getState() == PeonTaskState.FINISHED);
+        assertTrue(tasks.get(1).getState() == PeonTaskState.FAILED);
+    }
+
+    @Test
+    public void defaultWaitingTasks() {
+        PeonMaster minimalPeonMaster = new MinimalPeonMaster(peonMaster);
+
+        // A peon master that does not implement getWaitingTasks() has no wait queue.
+        assertTrue(minimalPeonMaster.getWaitingTasks().isEmpty());
+    }
+
+    @Test
+    public void graph() throws InterruptedException {
+        // The dependent tasks have lists as results, so they get a peon master without this test as listener.
+        ExecutorPeonMaster graphPeonMaster = new ExecutorPeonMaster(2);
+        final CountDownLatch graphDone = new CountDownLatch(4);
+        graphPeonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getId() == EventId.DONE) {
+                    graphDone.countDown();
+                }
+            }
+        });
+        SuccessTask rootTask = new SuccessTask();
+        DependentTask leftTask = new DependentTask();
+        DependentTask rightTask = new DependentTask();
+        DependentTask joinTask = new DependentTask();
+        PeonTaskGraph peonTaskGraph = new PeonTaskGraph()
+            .add(rootTask)
+            .add(leftTask, rootTask)
+            .add(rightTask, rootTask)
+            .add(joinTask, leftTask, rightTask);
+        graphPeonMaster.execute(peonTaskGraph);
+
+        assertTrue(graphDone.await(5, TimeUnit.SECONDS));
+
+        // The result of each task should have flowed to the tasks that depend on it.
+        assertTrue(joinTask.getState() == PeonTaskState.FINISHED);
+        assertEquals(rootTask.getResult(), leftTask.getResult().get(0));
+        assertEquals(rootTask.getResult(), rightTask.getResult().get(0));
+        assertEquals(Arrays.<Object>asList(leftTask.getResult(), rightTask.getResult()), joinTask.getResult().subList(0, 2));
+        assertTrue(peonTaskGraph.isDone());
+        assertTrue(peonTaskGraph.getSkippedTasks().isEmpty());
+        graphPeonMaster.shutdown();
+    }
+
+    @Test
+    public void graphFailure() throws InterruptedException {
+        ExecutorPeonMaster graphPeonMaster = new ExecutorPeonMaster(2);
+        final CountDownLatch graphDone = new CountDownLatch(4);
+        final List<PeonTask> cancelledTasks = Collections.synchronizedList(new ArrayList<PeonTask>());
+        graphPeonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getId() == EventId.CANCELLED) {
+                    cancelledTasks.add(e.getSource());
+                } else if(e.getId() == EventId.DONE) {
+                    graphDone.countDown();
+                }
+            }
+        });
+        ErrorTask errorTask = new ErrorTask();
+        DependentTask childTask = new DependentTask();
+        DependentTask grandchildTask = new DependentTask();
+        SuccessTask independentTask = new SuccessTask();
+        PeonTaskGraph peonTaskGraph = new PeonTaskGraph()
+            .add(errorTask)
+            .add(childTask, errorTask)
+            .add(grandchildTask, childTask)
+            .add(independentTask);
+        graphPeonMaster.execute(peonTaskGraph);
+
+        assertTrue(graphDone.await(5, TimeUnit.SECONDS));
+
+        // The failure should have propagated down its branch without affecting the independent task.
+        assertTrue(errorTask.getState() == PeonTaskState.FAILED);
+        assertTrue(childTask.getState() == PeonTaskState.CANCELLED);
+        assertTrue(grandchildTask.getState() == PeonTaskState.CANCELLED);
+        assertNull(childTask.getResult());
+        assertTrue(independentTask.getState() == PeonTaskState.FINISHED);
+        assertEquals(Arrays.<PeonTask>asList(childTask, grandchildTask), cancelledTasks);
+        assertTrue(peonTaskGraph.isDone());
+        graphPeonMaster.shutdown();
+    }
+
+    @Test
+    public void graphBlocking() throws InterruptedException {
+        done = new CountDownLatch(2);
+        GatedTask firstTask = new GatedTask();
+        GatedTask secondTask = new GatedTask();
+        peonMaster.execute(new PeonTaskGraph().add(firstTask).add(secondTask));
+
+        // The tasks are independent but class blocking, so the second must wait for the first even though
+        // queueing of blocked tasks is disabled.
+        assertEquals(Collections.singletonList(secondTask), peonMaster.getWaitingTasks());
+
+        firstTask.open();
+        secondTask.open();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(secondTask.getState() == PeonTaskState.FINISHED);
+    }
+
+    @Test
+    public void graphCancelWaiting() {
+        GatedTask runningTask = new GatedTask();
+        GatedTask waitingTask = new GatedTask();
+        DependentTask dependentTask = new DependentTask();
+        peonMaster.execute(runningTask);
+        PeonTaskGraph peonTaskGraph = new PeonTaskGraph()
+            .add(waitingTask)
+            .add(dependentTask, waitingTask);
+        peonMaster.execute(peonTaskGraph);
+        assertEquals(Collections.singletonList(waitingTask), peonMaster.getWaitingTasks());
+
+        // Cancelling the waiting task skips the task that depends on it at once, while the blocking task still runs.
+        done = new CountDownLatch(2);
+        waitingTask.cancel();
+
+        assertEquals(0, done.getCount());
+        assertTrue(dependentTask.getState() == PeonTaskState.CANCELLED);
+        assertEquals(Collections.<PeonTask>singleton(dependentTask), peonTaskGraph.getSkippedTasks());
+        assertTrue(peonTaskGraph.isDone());
+        assertTrue(peonMaster.getCurrentTasks().contains(runningTask));
+        runningTask.open();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void graphPrerequisiteOrder() {
+        new PeonTaskGraph().add(new SuccessTask(), new SuccessTask());
+    }
+
+    @Test
+    public void recursive() throws InterruptedException {
+        // The result is a number, so the task gets a peon master without this test as listener.
+        ExecutorPeonMaster recursivePeonMaster = new ExecutorPeonMaster(1);
+        final CountDownLatch recursiveDone = new CountDownLatch(1);
+        recursivePeonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getId() == EventId.DONE) {
+                    recursiveDone.countDown();
+                }
+            }
+        });
+        ForkJoinPool pool = new ForkJoinPool(4);
+        SumTask sumTask = new SumTask(1000000, pool);
+        recursivePeonMaster.execute(sumTask);
+
+        assertTrue(recursiveDone.await(5, TimeUnit.SECONDS));
+
+        // The progress of all the subtasks should have rolled up into the task.
+        assertTrue(sumTask.getState() == PeonTaskState.FINISHED);
+        assertEquals(Long.valueOf(500000500000L), sumTask.getResult());
+        assertEquals(sumTask.getTotal(), sumTask.getProgress());
+        recursivePeonMaster.shutdown();
+        pool.shutdown();
+    }
+
+    @Test
+    public void recursiveCancel() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        GatedRecursiveTask gatedRecursiveTask = new GatedRecursiveTask(pool);
+        peonMaster.execute(gatedRecursiveTask);
+        assertTrue(gatedRecursiveTask.awaitComputing(5, TimeUnit.SECONDS));
+
+        // The subtask keeps computing, but the worker thread stops waiting for it as soon as the task is cancelled.
+        gatedRecursiveTask.cancel();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(gatedRecursiveTask.getState() == PeonTaskState.CANCELLED);
+        assertTrue(peonMaster.getCurrentTasks().isEmpty());
+        gatedRecursiveTask.open();
+        pool.shutdown();
+    }
+
+    @Test
+    public void streaming() throws InterruptedException {
+        ExecutorPeonMaster streamingPeonMaster = new ExecutorPeonMaster(1);
+        final StreamTask streamTask = new StreamTask(10000);
+        final List<Integer> rows = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger maxBuffered = new AtomicInteger();
+        final CountDownLatch streamDone = new CountDownLatch(1);
+        streamingPeonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getId() == EventId.PUBLISHED || e.getId() == EventId.DONE) {
+                    maxBuffered.set(Math.max(maxBuffered.get(), streamTask.getBufferedChunkCount()));
+                    rows.addAll(streamTask.takeChunks());
+                }
+                if(e.getId() == EventId.DONE) {
+                    streamDone.countDown();
+                }
+            }
+        });
+        streamingPeonMaster.execute(streamTask);
+
+        assertTrue(streamDone.await(5, TimeUnit.SECONDS));
+
+        // Every row should have arrived in order without the buffer ever growing beyond its capacity.
+        assertTrue(streamTask.getState() == PeonTaskState.FINISHED);
+        assertEquals(Integer.valueOf(10000), streamTask.getResult());
+        assertEquals(10000, streamTask.getPublishedChunkCount());
+        assertEquals(10000, rows.size());
+        for(int i = 0; i < rows.size(); i++) {
+            assertEquals(Integer.valueOf(i), rows.get(i));
+        }
+        assertTrue(maxBuffered.get() <= StreamTask.BUFFER_CAPACITY);
+        streamingPeonMaster.shutdown();
+    }
+
+    @Test
+    public void deduplication() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        DeduplicatedTask firstTask = new DeduplicatedTask("lookup", gate, executions);
+        DeduplicatedTask duplicateTask = new DeduplicatedTask("lookup", gate, executions);
+        DeduplicatedTask otherTask = new DeduplicatedTask("other lookup", gate, executions);
+        done = new CountDownLatch(3);
+        peonMaster.execute(firstTask);
+        CompletableFuture<Thread> duplicateFuture = peonMaster.submit(duplicateTask);
+        peonMaster.execute(otherTask);
+
+        // The duplicate rides along with the first task instead of running itself.
+        assertEquals(2, peonMaster.getCurrentTasks().size());
+        assertFalse(peonMaster.getCurrentTasks().contains(duplicateTask));
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, executions.get());
+        assertTrue(duplicateTask.getState() == PeonTaskState.FINISHED);
+        assertTrue(duplicateTask.getResult() == firstTask.getResult());
+        assertTrue(duplicateFuture.get(5, TimeUnit.SECONDS) == firstTask.getResult());
+    }
+
+    @Test
+    public void deduplicationAfterDone() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(0);
+        AtomicInteger executions = new AtomicInteger();
+        peonMaster.execute(new DeduplicatedTask("lookup", gate, executions));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // Once the first task is done, the same work is done again.
+        done = new CountDownLatch(1);
+        peonMaster.execute(new DeduplicatedTask("lookup", gate, executions));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void deduplicationKeyChange() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        DeduplicatedTask movingTask = new DeduplicatedTask("moving", gate, executions);
+        peonMaster.execute(movingTask);
+        movingTask.setKey("moved");
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // The flight ends under the key it was taken with, so the old key is free again.
+        done = new CountDownLatch(1);
+        peonMaster.execute(new DeduplicatedTask("moving", gate, executions));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void deduplicationRejected() {
+        CountDownLatch gate = new CountDownLatch(0);
+        AtomicInteger executions = new AtomicInteger();
+        final ExecutorPeonMaster rejectingPeonMaster = new ExecutorPeonMaster(1);
+        rejectingPeonMaster.shutdown();
+        final DeduplicatedTask rejectedDuplicateTask = new DeduplicatedTask("rejected", gate, executions);
+        final List<EventId> duplicateEventIds = Collections.synchronizedList(new ArrayList<EventId>());
+        rejectingPeonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getSource() == rejectedDuplicateTask) {
+                    duplicateEventIds.add(e.getId());
+                } else if(e.getId() == EventId.STARTING) {
+                    rejectingPeonMaster.execute(rejectedDuplicateTask);
+                }
+            }
+        });
+        try {
+            rejectingPeonMaster.execute(new DeduplicatedTask("rejected", gate, executions));
+            fail("The task should have been rejected.");
+        } catch(RejectedExecutionException e) {
+            // Expected.
+        }
+
+        assertTrue(rejectedDuplicateTask.getState() == PeonTaskState.CANCELLED);
+        assertEquals(Arrays.asList(EventId.CANCELLED, EventId.DONE), duplicateEventIds);
+    }
+
+    @Test
+    public void resultCache() throws InterruptedException {
+        LruPeonResultCache resultCache = new LruPeonResultCache(2);
+        peonMaster.setResultCache(resultCache);
+        AtomicInteger executions = new AtomicInteger();
+        LookupTask firstTask = new LookupTask("a", executions);
+        peonMaster.execute(firstTask);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // A repeat lookup is served from the cache before execute() returns.
+        done = new CountDownLatch(1);
+        LookupTask repeatTask = new LookupTask("a", executions);
+        peonMaster.execute(repeatTask);
+
+        assertEquals(0, done.getCount());
+        assertTrue(repeatTask.getState() == PeonTaskState.FINISHED);
+        assertTrue(repeatTask.getResult() == firstTask.getResult());
+        assertTrue(eventIds.contains(EventId.CACHED));
+        assertEquals(1, executions.get());
+        assertEquals(1, resultCache.getHitCount());
+        assertEquals(1, resultCache.getMissCount());
+
+        // Two more lookups push the least recently used result out of the cache.
+        done = new CountDownLatch(2);
+        peonMaster.execute(new LookupTask("b", executions));
+        peonMaster.execute(new LookupTask("c", executions));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, resultCache.size());
+        assertEquals(1, resultCache.getEvictionCount());
+    }
+
+    @Test
+    public void resultCacheExpiry() {
+        final AtomicLong now = new AtomicLong();
+        LruPeonResultCache resultCache = new LruPeonResultCache(10, 50, TimeUnit.MILLISECONDS) {
+            @Override
+            protected long nanoTime() {
+                return now.get();
+            }
+        };
+        resultCache.put("key", "result");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(49));
+
+        assertEquals("result", resultCache.get("key"));
+
+        // Results expire after their time to live.
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertNull(resultCache.get("key"));
+        assertEquals(1, resultCache.getEvictionCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void resultCacheMaxSize() {
+        new LruPeonResultCache(0);
+    }
+
+    @Test
+    public void journal() throws Exception {
+        File file = File.createTempFile("peon", ".journal");
+        file.deleteOnExit();
+        PeonTaskJournal journal = new PeonTaskJournal(file);
+        // The journal records the DONE event before this test hears of it.
+        peonMaster.removePeonTaskListener(this);
+        peonMaster.addPeonTaskListener(journal);
+        peonMaster.addPeonTaskListener(this);
+        peonMaster.execute(new SuccessTask());
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // The journal hears of the STARTED event before this listener, which is added after it.
+        final CountDownLatch started = new CountDownLatch(1);
+        PeonTaskListener startedListener = new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getId() == EventId.STARTED) {
+                    started.countDown();
+                }
+            }
+        };
+        peonMaster.addPeonTaskListener(startedListener);
+        RestartableTask unfinishedTask = new RestartableTask("report 42");
+        done = new CountDownLatch(1);
+        peonMaster.execute(unfinishedTask);
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        peonMaster.removePeonTaskListener(startedListener);
+
+        // The application stops while the restartable task is still running.
+        peonMaster.removePeonTaskListener(journal);
+        journal.sync();
+        journal.close();
+        unfinishedTask.open();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        journal = new PeonTaskJournal(file);
+        peonMaster.removePeonTaskListener(this);
+        peonMaster.addPeonTaskListener(journal);
+        peonMaster.addPeonTaskListener(this);
+        List<JournaledTask> unfinishedTasks = journal.getUnfinishedTasks();
+
+        assertEquals(1, unfinishedTasks.size());
+        assertEquals(RestartableTask.class.getName(), unfinishedTasks.get(0).getTaskClassName());
+        assertEquals("report 42", unfinishedTasks.get(0).getRestartData());
+        assertTrue(unfinishedTasks.get(0).getState() == PeonTaskState.ACTIVE);
+
+        done = new CountDownLatch(1);
+        List<PeonTask> recoveredTasks = journal.recover(peonMaster, new ReflectivePeonTaskRestorer());
+
+        assertEquals(1, recoveredTasks.size());
+        assertEquals("report 42", ((RestartableTask)recoveredTasks.get(0)).getRestartData());
+        ((RestartableTask)recoveredTasks.get(0)).open();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        journal.close();
+
+        // Once the recovered task is done there is nothing left to recover.
+        journal = new PeonTaskJournal(file);
+        assertTrue(journal.getUnfinishedTasks().isEmpty());
+        assertNull(journal.getError());
+        journal.close();
+    }
+
+    @Test
+    public void checkpoint() throws Exception {
+        File directory = File.createTempFile("peon", ".checkpoints");
+        directory.delete();
+        FileCheckpointStore checkpointStore = new FileCheckpointStore(directory);
+        CheckpointTask failingTask = new CheckpointTask(checkpointStore, "long haul", 100, 60);
+        failingTask.setCheckpointInterval(0, TimeUnit.MILLISECONDS);
+        peonMaster.execute(failingTask);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(failingTask.getState() == PeonTaskState.EXCEPTION);
+        assertNull(failingTask.getResumedFrom());
+        assertEquals(60, checkpointStore.load("long haul").getProgress());
+
+        // A new task with the same key resumes where the failed one left off.
+        done = new CountDownLatch(1);
+        CheckpointTask resumedTask = new CheckpointTask(checkpointStore, "long haul", 100, -1);
+        peonMaster.execute(resumedTask);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(resumedTask.getState() == PeonTaskState.FINISHED);
+        assertEquals("60", resumedTask.getResumedFrom().getState());
+        assertEquals(40, resumedTask.getProcessed());
+        assertEquals(100, resumedTask.getProgress());
+        assertNull(checkpointStore.load("long haul"));
+        assertNull(resumedTask.getCheckpointError());
+        directory.delete();
+    }
+
+    @Override
+    public void peonTaskEvent(PeonTaskEvent e) {
+        eventIds.add(e.getId());
+        if(e.getId() == EventId.CANCELLED
+           || e.getId() == EventId.FAILED
+           || e.getId() == EventId.EXCEPTION
+           || e.getId() == EventId.FINISHED) {
+            callbackThread = Thread.currentThread();
+            workerThread = (Thread)e.getSource().getResult();
+        } else if(e.getId() == EventId.DONE) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * A peon master that only implements the methods a peon master has to implement, by delegating to another
+     * peon master, so that the default methods of the PeonMaster interface can be tested.
+     */
+    private static class MinimalPeonMaster implements PeonMaster {
+
+        private final PeonMaster peonMaster;
+
+        public MinimalPeonMaster(PeonMaster peonMaster) {
+            this.peonMaster = peonMaster;
+        }
+
+        @Override
+        public void execute(PeonTask peonTask) {
+            peonMaster.execute(peonTask);
+        }
+
+        @Override
+        public Set<PeonTask> getCurrentTasks() {
+            return peonMaster.getCurrentTasks();
+        }
+
+        @Override
+        public PeonTask getBlockingTaskFor(Class<? extends PeonTask> clazz) {
+            return peonMaster.getBlockingTaskFor(clazz);
+        }
+
+        @Override
+        public PeonTask getBlockingTaskFor(Object object) {
+            return peonMaster.getBlockingTaskFor(object);
+        }
+
+        @Override
+        public void addPeonTaskListener(PeonTaskListener peonTaskListener) {
+            peonMaster.addPeonTaskListener(peonTaskListener);
+        }
+
+        @Override
+        public void removePeonTaskListener(PeonTaskListener peonTaskListener) {
+            peonMaster.removePeonTaskListener(peonTaskListener);
+        }
+
+    }
+
+}
@@ -6,6 +6,12 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -27,6 +33,7 @@ import org.peon.test.ClassBlockingTask;
 import org.peon.test.EndlessTask;
 import org.peon.test.ErrorTask;
 import org.peon.test.ExceptionTask;
+import org.peon.test.ProgressTask;
 import org.peon.test.SuccessTask;
 
 @RunWith(JUnit4.class)
@@ -119,6 +126,58 @@ public class SwingPeonTest implements PeonTaskListener {
         assertFalse(workerThread == uiEventThread);
     }
 
+    @Test
+    public void executor() {
+        PeonMaster tmpPeonMaster = new SwingPeonMaster(1, 10, "swing-peon");
+        tmpPeonMaster.addPeonTaskListener(this);
+        final List<EventId> eventIds = Collections.synchronizedList(new ArrayList<EventId>());
+        tmpPeonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                eventIds.add(e.getId());
+            }
+        });
+        PeonTask successTask = new SuccessTask();
+        tmpPeonMaster.execute(successTask);
+
+        pause(1000);
+
+        // The task should have been queued before it started and should have run in the provided executor.
+        assertTrue(successTask.getState() == PeonTaskState.FINISHED);
+        assertTrue(workerThread.getName().startsWith("swing-peon-"));
+        assertTrue(eventIds.indexOf(EventId.QUEUED) >= 0);
+        assertTrue(eventIds.indexOf(EventId.QUEUED) < eventIds.indexOf(EventId.STARTED));
+        assertTrue(eventIds.indexOf(EventId.STARTED) < eventIds.indexOf(EventId.DONE));
+    }
+
+    @Test
+    public void maxProgressEventRate() {
+        SwingPeonMaster tmpPeonMaster = new SwingPeonMaster();
+        tmpPeonMaster.setMaxProgressEventRate(10);
+        final AtomicInteger progressedEvents = new AtomicInteger();
+        final AtomicLong finishedProgress = new AtomicLong();
+        tmpPeonMaster.addPeonTaskListener(new PeonTaskListener() {
+            @Override
+            public void peonTaskEvent(PeonTaskEvent e) {
+                if(e.getId() == EventId.PROGRESSED) {
+                    progressedEvents.incrementAndGet();
+                } else if(e.getId() == EventId.FINISHED) {
+                    finishedProgress.set(e.getSource().getProgress());
+                }
+            }
+        });
+        PeonTask progressTask = new ProgressTask();
+        tmpPeonMaster.execute(progressTask);
+
+        pause(3000);
+
+        // A million progress steps should have been throttled to a handful of events on the event thread.
+        assertTrue(progressTask.getState() == PeonTaskState.FINISHED);
+        assertEquals(ProgressTask.TOTAL, finishedProgress.get());
+        assertTrue(progressedEvents.get() > 0);
+        assertTrue(progressedEvents.get() < 1000);
+    }
+
     @Test
     public void blockingTaskFor() {
         // We'll use temporary peon masters here so that we won't have to wait for the tasks running in other